@@ -14,4 +14,5 @@ public class Article {
     private boolean isBlind;
     private LocalDateTime createdDate;
     private LocalDateTime modifiedDate;
+    private long version;
 }
@@ -0,0 +1,400 @@
+package com.back.simpleDb;
+
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.event.DeleteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.json.JsonBinary;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * MySQL binlog(binlog_format=ROW, binlog_row_image=FULL)를 replication 클라이언트로 받아 행 변경 이벤트로 바꾼다.
+ * 컬럼 이름은 binlog_row_metadata=FULL 일 때만 알 수 있고, 그렇지 않으면 c0, c1 ... 로 채우고
+ * 첫 번째 컬럼을 주키로 본다.
+ * 컬럼 값은 JDBC 로 조회한 값과 같은 타입으로 맞춘다. (정수는 UNSIGNED 를 반영한 Long, 문자열은 String, BIT(1) 은 Boolean)
+ */
+@Slf4j
+public class BinlogChangeEventSource implements ChangeEventSource {
+
+    private static final long CONNECT_TIMEOUT_MILLIS = 5_000;
+
+    // MySQL 컬럼 타입 코드 (enum_field_types)
+    private static final int TYPE_DECIMAL = 0;
+    private static final int TYPE_TINY = 1;
+    private static final int TYPE_SHORT = 2;
+    private static final int TYPE_LONG = 3;
+    private static final int TYPE_FLOAT = 4;
+    private static final int TYPE_DOUBLE = 5;
+    private static final int TYPE_TIMESTAMP = 7;
+    private static final int TYPE_LONGLONG = 8;
+    private static final int TYPE_INT24 = 9;
+    private static final int TYPE_DATETIME = 12;
+    private static final int TYPE_VARCHAR = 15;
+    private static final int TYPE_BIT = 16;
+    private static final int TYPE_TIMESTAMP2 = 17;
+    private static final int TYPE_DATETIME2 = 18;
+    private static final int TYPE_JSON = 245;
+    private static final int TYPE_NEWDECIMAL = 246;
+    private static final int TYPE_ENUM = 247;
+    private static final int TYPE_SET = 248;
+    private static final int TYPE_BLOB = 252;
+    private static final int TYPE_VAR_STRING = 253;
+    private static final int TYPE_STRING = 254;
+
+    private static final int BINARY_COLLATION = 63;
+
+    private final BinaryLogClient client;
+    private final String database;
+    private final String primaryKeyColumn;
+    private final Map<Long, Table> tablesById = new ConcurrentHashMap<>();
+
+    public BinlogChangeEventSource(String host, int port, String user, String password, String database) {
+        this(host, port, user, password, database, EntityMetadata.ID_COLUMN);
+    }
+
+    public BinlogChangeEventSource(String host, int port, String user, String password, String database,
+                                   String primaryKeyColumn) {
+        this.client = new BinaryLogClient(host, port, user, password);
+        this.database = database;
+        this.primaryKeyColumn = primaryKeyColumn;
+    }
+
+    public void setServerId(long serverId) {
+        client.setServerId(serverId);
+    }
+
+    @Override
+    public void start(Consumer<ChangeEvent> sink) {
+        client.registerEventListener(event -> {
+            EventData data = event.getData();
+
+            if (data instanceof TableMapEventData tableMap) {
+                tablesById.put(tableMap.getTableId(), Table.of(tableMap));
+            } else if (data instanceof WriteRowsEventData write) {
+                Table table = tableOf(write.getTableId());
+                if (table != null) {
+                    for (Serializable[] row : write.getRows()) {
+                        Map<String, Object> after = table.toMap(row);
+                        sink.accept(ChangeEvent.inserted(table.name(), primaryKey(after), after));
+                    }
+                }
+            } else if (data instanceof UpdateRowsEventData update) {
+                Table table = tableOf(update.getTableId());
+                if (table != null) {
+                    for (Map.Entry<Serializable[], Serializable[]> row : update.getRows()) {
+                        Map<String, Object> before = table.toMap(row.getKey());
+                        Map<String, Object> after = table.toMap(row.getValue());
+                        sink.accept(ChangeEvent.updated(table.name(), primaryKey(after), before, after));
+                    }
+                }
+            } else if (data instanceof DeleteRowsEventData delete) {
+                Table table = tableOf(delete.getTableId());
+                if (table != null) {
+                    for (Serializable[] row : delete.getRows()) {
+                        Map<String, Object> before = table.toMap(row);
+                        sink.accept(ChangeEvent.deleted(table.name(), primaryKey(before), before));
+                    }
+                }
+            }
+        });
+
+        try {
+            client.connect(CONNECT_TIMEOUT_MILLIS);
+        } catch (IOException | TimeoutException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            client.disconnect();
+        } catch (IOException e) {
+            log.warn("binlog 연결 종료 실패", e);
+        }
+    }
+
+    private Table tableOf(long tableId) {
+        Table table = tablesById.get(tableId);
+        if (table == null || (database != null && !database.equalsIgnoreCase(table.database()))) {
+            return null;
+        }
+
+        return table;
+    }
+
+    /**
+     * 컬럼 값은 이미 정규화되어 있다. 주키 컬럼 이름을 모르면 첫 번째 컬럼을 쓴다.
+     */
+    private Object primaryKey(Map<String, Object> row) {
+        if (row.isEmpty()) {
+            return null;
+        }
+
+        Object key = row.get(primaryKeyColumn);
+        return key != null ? key : row.values().iterator().next();
+    }
+
+    /**
+     * binlog 는 UNSIGNED 정수도 부호 있는 값(INT 는 Integer)으로 준다.
+     * JDBC 경로와 같은 키로 찾을 수 있도록 정수 키는 부호 없는 값을 반영한 Long 으로 맞춘다.
+     * unsigned 를 모르면(binlog_row_metadata=FULL 이 아니면) 음수 키를 UNSIGNED 로 본다.
+     */
+    static Object normalizeKey(Object key, int columnType, Boolean unsigned) {
+        if (!(key instanceof Byte || key instanceof Short || key instanceof Integer || key instanceof Long)) {
+            return key;
+        }
+
+        long value = ((Number) key).longValue();
+        if (!(unsigned != null ? unsigned : value < 0)) {
+            return value;
+        }
+
+        return switch (columnType) {
+            case TYPE_TINY -> value & 0xffL;
+            case TYPE_SHORT -> value & 0xffffL;
+            case TYPE_INT24 -> value & 0xffffffL;
+            case TYPE_LONG -> value & 0xffffffffL;
+            // BIGINT UNSIGNED 의 2^63 이상 값은 JDBC 와 같이 BigInteger 로 준다.
+            case TYPE_LONGLONG -> value < 0 ? new BigInteger(Long.toUnsignedString(value)) : value;
+            default -> value;
+        };
+    }
+
+    private static boolean isNumeric(int columnType) {
+        return switch (columnType) {
+            case TYPE_DECIMAL, TYPE_TINY, TYPE_SHORT, TYPE_LONG, TYPE_FLOAT, TYPE_DOUBLE,
+                 TYPE_LONGLONG, TYPE_INT24, TYPE_NEWDECIMAL -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * 문자셋 메타데이터가 붙는 컬럼. (CHAR, VARCHAR, BINARY, VARBINARY, TEXT, BLOB)
+     */
+    private static boolean isCharacter(int columnType) {
+        return columnType == TYPE_STRING || columnType == TYPE_VAR_STRING || columnType == TYPE_VARCHAR
+                || columnType == TYPE_BLOB;
+    }
+
+    /**
+     * ENUM, SET 은 TYPE_STRING 으로 기록되고 메타데이터 상위 바이트에 실제 타입이 들어 있다.
+     */
+    private static int realType(int columnType, int columnMeta) {
+        if (columnType == TYPE_STRING && columnMeta >= 256) {
+            int realType = columnMeta >> 8;
+            if (realType == TYPE_ENUM || realType == TYPE_SET) {
+                return realType;
+            }
+        }
+
+        return columnType;
+    }
+
+    /**
+     * binary 면 null 이다. 자주 쓰는 latin1, ascii 외에는 UTF-8 로 읽는다.
+     */
+    private static Charset charsetOf(int collation) {
+        return switch (collation) {
+            case BINARY_COLLATION -> null;
+            case 5, 8, 15, 31, 47, 48, 49, 94 -> StandardCharsets.ISO_8859_1;
+            case 11, 65 -> StandardCharsets.US_ASCII;
+            default -> StandardCharsets.UTF_8;
+        };
+    }
+
+    private record Table(String database, String name, List<Column> columns) {
+
+        /**
+         * 테이블 맵 이벤트마다 한 번만 컬럼 정보를 만든다.
+         * signedness 는 숫자 컬럼, 문자셋은 문자 컬럼, 값 목록은 ENUM/SET 컬럼에만 순서대로 붙는다.
+         */
+        static Table of(TableMapEventData tableMap) {
+            TableMapEventMetadata metadata = tableMap.getEventMetadata();
+            List<String> columnNames = metadata == null ? null : metadata.getColumnNames();
+            BitSet signedness = metadata == null ? null : metadata.getSignedness();
+            List<Integer> collations = collations(metadata);
+            List<String[]> enumValues = metadata == null ? null : metadata.getEnumStrValues();
+            List<String[]> setValues = metadata == null ? null : metadata.getSetStrValues();
+
+            byte[] columnTypes = tableMap.getColumnTypes() == null ? new byte[0] : tableMap.getColumnTypes();
+            int[] columnMetas = tableMap.getColumnMetadata();
+
+            List<Column> columns = new ArrayList<>(columnTypes.length);
+            int numericIndex = 0;
+            int characterIndex = 0;
+            int enumIndex = 0;
+            int setIndex = 0;
+
+            for (int i = 0; i < columnTypes.length; i++) {
+                int meta = columnMetas != null && i < columnMetas.length ? columnMetas[i] : 0;
+                int type = realType(columnTypes[i] & 0xff, meta);
+                String name = columnNames != null && i < columnNames.size() ? columnNames.get(i) : "c" + i;
+
+                Boolean unsigned = null;
+                Charset charset = type == TYPE_BLOB ? null : StandardCharsets.UTF_8;
+                String[] values = null;
+
+                if (isNumeric(type)) {
+                    unsigned = signedness == null ? null : signedness.get(numericIndex);
+                    numericIndex++;
+                } else if (isCharacter(type)) {
+                    if (collations != null && characterIndex < collations.size()) {
+                        charset = charsetOf(collations.get(characterIndex));
+                    }
+                    characterIndex++;
+                } else if (type == TYPE_ENUM) {
+                    values = enumValues != null && enumIndex < enumValues.size() ? enumValues.get(enumIndex) : null;
+                    enumIndex++;
+                } else if (type == TYPE_SET) {
+                    values = setValues != null && setIndex < setValues.size() ? setValues.get(setIndex) : null;
+                    setIndex++;
+                }
+
+                columns.add(new Column(name, type, meta, unsigned, charset, values));
+            }
+
+            return new Table(tableMap.getDatabase(), tableMap.getTable(), columns);
+        }
+
+        /**
+         * 문자 컬럼 순서대로의 collation. binlog_row_metadata=FULL 이 아니면 null 이다.
+         */
+        private static List<Integer> collations(TableMapEventMetadata metadata) {
+            if (metadata == null) {
+                return null;
+            }
+            if (metadata.getColumnCharsets() != null) {
+                return metadata.getColumnCharsets();
+            }
+
+            TableMapEventMetadata.DefaultCharset defaultCharset = metadata.getDefaultCharset();
+            if (defaultCharset == null) {
+                return null;
+            }
+
+            return new DefaultCollations(defaultCharset);
+        }
+
+        Map<String, Object> toMap(Serializable[] row) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int i = 0; i < row.length; i++) {
+                Column column = i < columns.size() ? columns.get(i) : new Column("c" + i, -1, 0, null, null, null);
+                values.put(column.name(), column.normalize(row[i]));
+            }
+
+            return values;
+        }
+    }
+
+    /**
+     * 기본 collation 에 컬럼별 예외만 덮어쓴 목록.
+     */
+    private static class DefaultCollations extends AbstractList<Integer> {
+        private final TableMapEventMetadata.DefaultCharset defaultCharset;
+
+        private DefaultCollations(TableMapEventMetadata.DefaultCharset defaultCharset) {
+            this.defaultCharset = defaultCharset;
+        }
+
+        @Override
+        public Integer get(int index) {
+            Map<Integer, Integer> overrides = defaultCharset.getCharsetCollations();
+            Integer collation = overrides == null ? null : overrides.get(index);
+            return collation != null ? collation : defaultCharset.getDefaultCharsetCollation();
+        }
+
+        @Override
+        public int size() {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * charset 이 null 이면 binary 컬럼이다. values 는 ENUM/SET 의 값 목록이다.
+     */
+    record Column(String name, int type, int meta, Boolean unsigned, Charset charset, String[] values) {
+
+        Object normalize(Object value) {
+            if (value == null) {
+                return null;
+            }
+
+            return switch (type) {
+                case TYPE_TINY, TYPE_SHORT, TYPE_INT24, TYPE_LONG, TYPE_LONGLONG -> normalizeKey(value, type, unsigned);
+                case TYPE_BIT -> value instanceof BitSet bits ? bits(bits, (meta >> 8) * 8 + (meta & 0xff)) : value;
+                case TYPE_STRING, TYPE_VAR_STRING, TYPE_VARCHAR, TYPE_BLOB ->
+                        value instanceof byte[] bytes && charset != null ? new String(bytes, charset) : value;
+                case TYPE_ENUM -> value instanceof Integer index && values != null && index <= values.length
+                        ? (index == 0 ? "" : values[index - 1])
+                        : value;
+                case TYPE_SET -> value instanceof Long mask && values != null ? setValue(mask) : value;
+                // DATETIME 은 시간대 없이 UTC 기준 Date 로 온다.
+                case TYPE_DATETIME, TYPE_DATETIME2 -> value instanceof Date date && !(value instanceof Timestamp)
+                        ? LocalDateTime.ofInstant(date.toInstant(), ZoneOffset.UTC)
+                        : value;
+                case TYPE_TIMESTAMP, TYPE_TIMESTAMP2 -> value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : value;
+                case TYPE_JSON -> value instanceof byte[] bytes ? json(bytes) : value;
+                default -> value;
+            };
+        }
+
+        /**
+         * JDBC 는 BIT(1) 을 Boolean, 그보다 긴 BIT 는 big-endian byte[] 로 준다.
+         */
+        private static Object bits(BitSet bits, int length) {
+            if (length <= 1) {
+                return bits.get(0);
+            }
+
+            byte[] bytes = new byte[(length + 7) / 8];
+            for (int i = bits.nextSetBit(0); i >= 0 && i < length; i = bits.nextSetBit(i + 1)) {
+                bytes[bytes.length - 1 - i / 8] |= (byte) (1 << (i % 8));
+            }
+
+            return bytes;
+        }
+
+        private String setValue(long mask) {
+            StringJoiner joiner = new StringJoiner(",");
+            for (int i = 0; i < values.length; i++) {
+                if ((mask & (1L << i)) != 0) {
+                    joiner.add(values[i]);
+                }
+            }
+
+            return joiner.toString();
+        }
+
+        private static Object json(byte[] bytes) {
+            try {
+                return JsonBinary.parseAsString(bytes);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
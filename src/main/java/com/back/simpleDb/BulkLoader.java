@@ -0,0 +1,183 @@
+package com.back.simpleDb;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Slf4j
+class BulkLoader {
+
+    private static final String MYSQL_STATEMENT_CLASS = "com.mysql.cj.jdbc.JdbcStatement";
+    private static final int INSERT_CHUNK_SIZE = 1_000;
+
+    private final Connection connection;
+    private final boolean localInfileEnabled;
+
+    BulkLoader(Connection connection, boolean localInfileEnabled) {
+        this.connection = connection;
+        this.localInfileEnabled = localInfileEnabled;
+    }
+
+    long load(String table, List<String> columns, Stream<Object[]> rows) {
+        try (rows) {
+            Iterator<Object[]> iterator = rows.iterator();
+
+            return isLoadDataAvailable()
+                    ? loadData(table, columns, iterator)
+                    : insertInChunks(table, columns, iterator);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long loadData(String table, List<String> columns, Iterator<Object[]> rows) throws SQLException {
+        String sql = loadDataSql(table, columns, findBitColumns(table, columns));
+
+        try (Statement statement = connection.createStatement()) {
+            setLocalInfileInputStream(statement, new LoadDataInputStream(rows));
+            return statement.executeLargeUpdate(sql);
+        }
+    }
+
+    /**
+     * BIT 컬럼에 텍스트 '0' 을 그대로 넣으면 문자 코드(0x30)로 읽혀 b'1' 로 잘린다.
+     * 그래서 BIT 컬럼은 사용자 변수로 받아 숫자로 바꿔 넣는다.
+     */
+    static String loadDataSql(String table, List<String> columns, Set<String> bitColumns) {
+        List<String> targets = new ArrayList<>(columns.size());
+        List<String> assignments = new ArrayList<>();
+
+        for (String column : columns) {
+            if (bitColumns.contains(column)) {
+                String variable = "@" + column;
+                targets.add(variable);
+                assignments.add("%s = %s + 0".formatted(column, variable));
+            } else {
+                targets.add(column);
+            }
+        }
+
+        String sql = """
+                LOAD DATA LOCAL INFILE 'stream' INTO TABLE %s
+                CHARACTER SET utf8mb4
+                FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'
+                LINES TERMINATED BY '\\n'
+                (%s)""".formatted(table, String.join(", ", targets));
+
+        return assignments.isEmpty() ? sql : sql + "\nSET " + String.join(", ", assignments);
+    }
+
+    private Set<String> findBitColumns(String table, List<String> columns) throws SQLException {
+        Set<String> bitColumns = new HashSet<>();
+
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT %s FROM %s WHERE 1 = 0".formatted(String.join(", ", columns), table))) {
+            ResultSetMetaData metaData = rs.getMetaData();
+
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                if (metaData.getColumnType(i) == Types.BIT) {
+                    bitColumns.add(columns.get(i - 1));
+                }
+            }
+        }
+
+        return bitColumns;
+    }
+
+    /**
+     * LOAD DATA 를 쓸 수 없으면 여러 행을 한 INSERT 에 담아 나눠 보낸다.
+     */
+    private long insertInChunks(String table, List<String> columns, Iterator<Object[]> rows) throws SQLException {
+        log.debug("LOAD DATA LOCAL INFILE 을 사용할 수 없어 multi-row INSERT 로 적재합니다. table={}", table);
+
+        Object[][] chunk = new Object[INSERT_CHUNK_SIZE][];
+        PreparedStatement fullChunkStatement = null;
+        long loaded = 0;
+
+        try {
+            while (rows.hasNext()) {
+                int size = 0;
+                while (size < INSERT_CHUNK_SIZE && rows.hasNext()) {
+                    chunk[size++] = rows.next();
+                }
+
+                if (size == INSERT_CHUNK_SIZE) {
+                    if (fullChunkStatement == null) {
+                        fullChunkStatement = connection.prepareStatement(insertSql(table, columns, size));
+                    }
+                    loaded += executeChunk(fullChunkStatement, chunk, size, columns.size());
+                } else {
+                    try (PreparedStatement lastChunkStatement = connection.prepareStatement(insertSql(table, columns, size))) {
+                        loaded += executeChunk(lastChunkStatement, chunk, size, columns.size());
+                    }
+                }
+            }
+        } finally {
+            if (fullChunkStatement != null) {
+                fullChunkStatement.close();
+            }
+        }
+
+        return loaded;
+    }
+
+    private long executeChunk(PreparedStatement pstm, Object[][] chunk, int size, int columnCount) throws SQLException {
+        int index = 1;
+        for (int i = 0; i < size; i++) {
+            for (int column = 0; column < columnCount; column++) {
+                pstm.setObject(index++, chunk[i][column]);
+            }
+        }
+
+        return pstm.executeLargeUpdate();
+    }
+
+    private String insertSql(String table, List<String> columns, int rowCount) {
+        String row = columns.stream().map(column -> "?").collect(Collectors.joining(", ", "(", ")"));
+
+        return "INSERT INTO %s (%s) VALUES %s".formatted(
+                table,
+                String.join(", ", columns),
+                String.join(", ", Collections.nCopies(rowCount, row))
+        );
+    }
+
+    private boolean isLoadDataAvailable() throws SQLException {
+        if (!localInfileEnabled
+                || !MySqlConnectionProperties.isEnabled(connection, MySqlConnectionProperties.ALLOW_LOAD_LOCAL_INFILE)) {
+            return false;
+        }
+
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT @@GLOBAL.local_infile")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private void setLocalInfileInputStream(Statement statement, InputStream in) throws SQLException {
+        try {
+            Class<?> mysqlStatementClass = Class.forName(MYSQL_STATEMENT_CLASS);
+            Method method = mysqlStatementClass.getMethod("setLocalInfileInputStream", InputStream.class);
+            method.invoke(statement.unwrap(mysqlStatementClass), in);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("MySQL 드라이버에 로컬 인파일 스트림을 설정할 수 없습니다.", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.back.simpleDb;
+
+import java.util.Map;
+
+/**
+ * 한 행의 변경. INSERT 는 before 가, DELETE 는 after 가 null 이다.
+ */
+public record ChangeEvent(
+        String table,
+        Type type,
+        Object primaryKey,
+        Map<String, Object> before,
+        Map<String, Object> after
+) {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    public static ChangeEvent inserted(String table, Object primaryKey, Map<String, Object> after) {
+        return new ChangeEvent(table, Type.INSERT, primaryKey, null, after);
+    }
+
+    public static ChangeEvent updated(String table, Object primaryKey, Map<String, Object> before, Map<String, Object> after) {
+        return new ChangeEvent(table, Type.UPDATE, primaryKey, before, after);
+    }
+
+    public static ChangeEvent deleted(String table, Object primaryKey, Map<String, Object> before) {
+        return new ChangeEvent(table, Type.DELETE, primaryKey, before, null);
+    }
+}
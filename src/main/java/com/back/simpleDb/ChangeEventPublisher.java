@@ -0,0 +1,43 @@
+package com.back.simpleDb;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@Slf4j
+class ChangeEventPublisher {
+
+    private final Map<String, List<ChangeListener>> listenersByTable = new ConcurrentHashMap<>();
+
+    void addListener(String table, ChangeListener listener) {
+        listenersByTable.computeIfAbsent(table.toLowerCase(), key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    void removeListener(String table, ChangeListener listener) {
+        List<ChangeListener> listeners = listenersByTable.get(table.toLowerCase());
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * 한 리스너가 실패해도 나머지 리스너와 이벤트 소스는 계속 동작해야 하므로 예외는 로그만 남긴다.
+     */
+    void publish(ChangeEvent event) {
+        List<ChangeListener> listeners = listenersByTable.get(event.table().toLowerCase());
+        if (listeners == null) {
+            return;
+        }
+
+        for (ChangeListener listener : listeners) {
+            try {
+                listener.onChange(event);
+            } catch (RuntimeException e) {
+                log.error("변경 이벤트 처리 실패 : {}", event, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.back.simpleDb;
+
+import java.util.function.Consumer;
+
+public interface ChangeEventSource extends AutoCloseable {
+
+    void start(Consumer<ChangeEvent> sink);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,6 @@
+package com.back.simpleDb;
+
+@FunctionalInterface
+public interface ChangeListener {
+    void onChange(ChangeEvent event);
+}
@@ -0,0 +1,63 @@
+package com.back.simpleDb;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger failureCount = new AtomicInteger();
+    private volatile long openedAt;
+
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold < 1 || openMillis < 0) {
+            throw new IllegalArgumentException("failureThreshold >= 1, openMillis >= 0 이어야 합니다.");
+        }
+
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMillis * 1_000_000L;
+    }
+
+    /**
+     * OPEN 상태에서는 대기 없이 즉시 실패한다.
+     * 대기 시간이 지나면 한 스레드만 HALF_OPEN 으로 시험 연결을 시도할 수 있다.
+     */
+    void acquirePermission() {
+        State current = state.get();
+
+        if (current == State.CLOSED) {
+            return;
+        }
+
+        if (current == State.OPEN
+                && System.nanoTime() - openedAt >= openNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            return;
+        }
+
+        throw new IllegalStateException("데이터베이스에 연결할 수 없습니다. (circuit " + current + ")");
+    }
+
+    void recordSuccess() {
+        failureCount.set(0);
+        state.set(State.CLOSED);
+    }
+
+    void recordFailure() {
+        if (state.get() == State.HALF_OPEN || failureCount.incrementAndGet() >= failureThreshold) {
+            openedAt = System.nanoTime();
+            state.set(State.OPEN);
+        }
+    }
+
+    State getState() {
+        return state.get();
+    }
+}
@@ -0,0 +1,120 @@
+package com.back.simpleDb;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 컬럼 단위 바이너리 포맷.
+ * <pre>
+ * header : "SDBC" | int version | int columnCount | (short nameLength, name, byte type) * columnCount
+ * batch  : int rowCount | (null bitmap, non-null values) * columnCount
+ * footer : int 0
+ * </pre>
+ * LONG, DOUBLE 은 8바이트, BOOLEAN 은 1바이트, DATETIME 은 epoch 마이크로초 8바이트,
+ * STRING, BYTES 는 int 길이 뒤에 바이트가 온다. 숫자는 big-endian 이다.
+ */
+class ColumnarRowBatchEncoder implements RowBatchEncoder {
+
+    static final byte[] MAGIC = {'S', 'D', 'B', 'C'};
+    static final int VERSION = 1;
+
+    static final byte TYPE_LONG = 1;
+    static final byte TYPE_DOUBLE = 2;
+    static final byte TYPE_BOOLEAN = 3;
+    static final byte TYPE_DATETIME = 4;
+    static final byte TYPE_STRING = 5;
+    static final byte TYPE_BYTES = 6;
+
+    private final ChannelWriter writer;
+    private byte[] columnTypes;
+
+    ColumnarRowBatchEncoder(ChannelWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void writeHeader(String[] columnNames, int[] sqlTypes) throws IOException {
+        columnTypes = new byte[columnNames.length];
+
+        writer.putBytes(MAGIC);
+        writer.putInt(VERSION);
+        writer.putInt(columnNames.length);
+
+        for (int i = 0; i < columnNames.length; i++) {
+            byte[] name = columnNames[i].getBytes(StandardCharsets.UTF_8);
+            columnTypes[i] = toColumnType(sqlTypes[i]);
+
+            writer.putShort(name.length);
+            writer.putBytes(name);
+            writer.putByte(columnTypes[i]);
+        }
+    }
+
+    @Override
+    public void writeBatch(Object[][] rows, int rowCount) throws IOException {
+        writer.putInt(rowCount);
+
+        for (int column = 0; column < columnTypes.length; column++) {
+            writeNullBitmap(rows, rowCount, column);
+
+            for (int i = 0; i < rowCount; i++) {
+                Object value = rows[i][column];
+                if (value != null) {
+                    writeValue(columnTypes[column], value);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.putInt(0);
+        writer.flush();
+    }
+
+    private void writeNullBitmap(Object[][] rows, int rowCount, int column) throws IOException {
+        for (int offset = 0; offset < rowCount; offset += 8) {
+            int bits = 0;
+
+            for (int bit = 0; bit < 8 && offset + bit < rowCount; bit++) {
+                if (rows[offset + bit][column] == null) {
+                    bits |= 1 << bit;
+                }
+            }
+
+            writer.putByte(bits);
+        }
+    }
+
+    private void writeValue(byte type, Object value) throws IOException {
+        switch (type) {
+            case TYPE_LONG -> writer.putLong(((Number) value).longValue());
+            case TYPE_DOUBLE -> writer.putDouble(((Number) value).doubleValue());
+            case TYPE_BOOLEAN -> writer.putByte(Boolean.TRUE.equals(value) ? 1 : 0);
+            case TYPE_DATETIME -> writer.putLong(ChronoUnit.MICROS.between(
+                    LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC), (LocalDateTime) value));
+            case TYPE_BYTES -> writeBytes((byte[]) value);
+            default -> writeBytes(value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writer.putInt(bytes.length);
+        writer.putBytes(bytes);
+    }
+
+    private static byte toColumnType(int sqlType) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> TYPE_LONG;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> TYPE_DOUBLE;
+            case Types.BIT, Types.BOOLEAN -> TYPE_BOOLEAN;
+            case Types.DATE, Types.TIMESTAMP -> TYPE_DATETIME;
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> TYPE_BYTES;
+            default -> TYPE_STRING;
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.back.simpleDb;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+class CsvRowBatchEncoder implements RowBatchEncoder {
+
+    private final ChannelWriter writer;
+    private final StringBuilder line = new StringBuilder();
+
+    CsvRowBatchEncoder(ChannelWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void writeHeader(String[] columnNames, int[] sqlTypes) throws IOException {
+        writeLine(columnNames);
+    }
+
+    @Override
+    public void writeBatch(Object[][] rows, int rowCount) throws IOException {
+        for (int i = 0; i < rowCount; i++) {
+            writeLine(rows[i]);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+
+    private void writeLine(Object[] values) throws IOException {
+        line.setLength(0);
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            appendField(values[i]);
+        }
+
+        line.append("\r\n");
+        writer.putBytes(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void appendField(Object value) {
+        if (value == null) {
+            return;
+        }
+
+        String text = value instanceof byte[] bytes
+                ? Base64.getEncoder().encodeToString(bytes)
+                : value.toString();
+
+        if (!needsQuote(text)) {
+            line.append(text);
+            return;
+        }
+
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private boolean needsQuote(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,172 @@
+package com.back.simpleDb;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class EntityMetadata<T> {
+
+    static final String ID_COLUMN = "id";
+    static final String VERSION_COLUMN = "version";
+
+    private static final Map<Class<?>, EntityMetadata<?>> CACHE = new ConcurrentHashMap<>();
+
+    private final Class<T> entityClass;
+    private final String tableName;
+    private final Map<String, Accessor> accessors;
+    private final Map<String, Field> fields;
+    private final List<String> columnNames;
+
+    private EntityMetadata(Class<T> entityClass) {
+        this.entityClass = entityClass;
+        this.tableName = Character.toLowerCase(entityClass.getSimpleName().charAt(0)) + entityClass.getSimpleName().substring(1);
+        this.accessors = Collections.unmodifiableMap(createAccessors(entityClass));
+        this.fields = Collections.unmodifiableMap(createFields(entityClass));
+        this.columnNames = List.copyOf(accessors.keySet());
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> EntityMetadata<T> of(Class<T> entityClass) {
+        return (EntityMetadata<T>) CACHE.computeIfAbsent(entityClass, EntityMetadata::new);
+    }
+
+    Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * 클래스 이름의 첫 글자를 소문자로 바꾼 것을 테이블 이름으로 쓴다. (Article -> article)
+     */
+    String getTableName() {
+        return tableName;
+    }
+
+    boolean isVersioned() {
+        return hasColumn(VERSION_COLUMN);
+    }
+
+    /**
+     * UPDATE 의 SET 절에 들어갈 컬럼들. id 와 version 은 제외한다.
+     */
+    List<String> getUpdatableColumnNames() {
+        List<String> updatableColumnNames = new ArrayList<>(columnNames);
+        updatableColumnNames.remove(ID_COLUMN);
+        updatableColumnNames.remove(VERSION_COLUMN);
+
+        return updatableColumnNames;
+    }
+
+    List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * getColumnNames() 순서대로 현재 값을 담는다. 값은 복사하지 않고 참조만 보관한다.
+     */
+    Object[] snapshot(Object entity) {
+        Object[] values = new Object[columnNames.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = read(entity, columnNames.get(i));
+        }
+
+        return values;
+    }
+
+    boolean hasColumn(String columnName) {
+        return accessors.containsKey(columnName);
+    }
+
+    Object read(Object entity, String columnName) {
+        try {
+            return accessor(columnName).read(entity);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    void write(Object entity, String columnName, Object value) {
+        Field field = fields.get(columnName);
+        if (field == null) {
+            throw new IllegalArgumentException(entityClass.getSimpleName() + " 의 " + columnName + " 필드는 수정할 수 없습니다.");
+        }
+
+        if (value instanceof Number number) {
+            Class<?> type = field.getType();
+            if (type == int.class || type == Integer.class) {
+                value = number.intValue();
+            } else if (type == long.class || type == Long.class) {
+                value = number.longValue();
+            }
+        }
+
+        try {
+            field.set(entity, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Accessor accessor(String columnName) {
+        Accessor accessor = accessors.get(columnName);
+        if (accessor == null) {
+            throw new IllegalArgumentException(entityClass.getSimpleName() + " 에 " + columnName + " 필드가 없습니다.");
+        }
+
+        return accessor;
+    }
+
+    private static Map<String, Accessor> createAccessors(Class<?> entityClass) {
+        Map<String, Accessor> accessors = new LinkedHashMap<>();
+
+        if (entityClass.isRecord()) {
+            for (RecordComponent component : entityClass.getRecordComponents()) {
+                Method accessor = component.getAccessor();
+                accessor.setAccessible(true);
+                accessors.put(component.getName(), accessor::invoke);
+            }
+
+            return accessors;
+        }
+
+        for (Field field : entityClass.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                continue;
+            }
+
+            field.setAccessible(true);
+            accessors.put(field.getName(), field::get);
+        }
+
+        return accessors;
+    }
+
+    private static Map<String, Field> createFields(Class<?> entityClass) {
+        Map<String, Field> fields = new LinkedHashMap<>();
+        if (entityClass.isRecord()) {
+            return fields;
+        }
+
+        for (Field field : entityClass.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()) || field.isSynthetic()) {
+                continue;
+            }
+
+            field.setAccessible(true);
+            fields.put(field.getName(), field);
+        }
+
+        return fields;
+    }
+
+    @FunctionalInterface
+    private interface Accessor {
+        Object read(Object entity) throws ReflectiveOperationException;
+    }
+}
@@ -0,0 +1,189 @@
+package com.back.simpleDb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 조회한 엔티티의 스냅샷을 보관했다가, save 된 엔티티 중 바뀐 컬럼만 UPDATE 한다.
+ * 같은 테이블, 같은 변경 컬럼 조합의 UPDATE 는 JDBC 배치 하나로 묶는다.
+ */
+class EntityTracker {
+
+    private final Map<Object, Object[]> snapshots = new IdentityHashMap<>();
+    private final Set<Object> savedEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Object> saveOrder = new ArrayList<>();
+    private final Set<Object> versionlessEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    void track(Object entity) {
+        track(entity, true);
+    }
+
+    /**
+     * version 컬럼 없이 조회한 버전 엔티티는 버전이 0 으로 남아 flush 때마다 충돌하므로 save 할 수 없게 표시한다.
+     */
+    void track(Object entity, boolean versionLoaded) {
+        if (entity == null || entity.getClass().isRecord()) {
+            return;
+        }
+
+        EntityMetadata<?> metadata = EntityMetadata.of(entity.getClass());
+        if (metadata.isVersioned() && !versionLoaded) {
+            snapshots.remove(entity);
+            versionlessEntities.add(entity);
+            return;
+        }
+
+        versionlessEntities.remove(entity);
+        snapshots.put(entity, metadata.snapshot(entity));
+    }
+
+    boolean isTracked(Object entity) {
+        return snapshots.containsKey(entity);
+    }
+
+    void save(Object entity) {
+        if (versionlessEntities.contains(entity)) {
+            throw new IllegalStateException("version 컬럼 없이 조회한 엔티티는 save 할 수 없습니다. SELECT 에 version 을 포함하세요.");
+        }
+        if (!isTracked(entity)) {
+            throw new IllegalStateException("추적 중인 엔티티만 save 할 수 있습니다. 추적 모드에서 조회한 엔티티인지 확인하세요.");
+        }
+
+        if (savedEntities.add(entity)) {
+            saveOrder.add(entity);
+        }
+    }
+
+    /**
+     * 충돌한 엔티티가 있어도 나머지 배치 결과는 모두 반영한 뒤 첫 충돌을 던진다. (이후 충돌은 suppressed)
+     * 충돌한 엔티티만 save 된 상태로 남아, 버전을 맞춘 뒤 다시 flush 할 수 있다.
+     */
+    int flush(MyJdbcTemplate jdbcTemplate, MaterializedAggregates aggregates) {
+        Map<String, List<Object>> entitiesBySql = new LinkedHashMap<>();
+        Map<String, List<List<Object>>> parametersBySql = new LinkedHashMap<>();
+        Set<Object> flushedEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (Object entity : saveOrder) {
+            EntityMetadata<?> metadata = EntityMetadata.of(entity.getClass());
+            List<String> changedColumns = changedColumns(metadata, entity);
+
+            if (changedColumns.isEmpty()) {
+                flushedEntities.add(entity);
+                continue;
+            }
+
+            String sql = updateSql(metadata, changedColumns);
+            entitiesBySql.computeIfAbsent(sql, key -> new ArrayList<>()).add(entity);
+            parametersBySql.computeIfAbsent(sql, key -> new ArrayList<>()).add(updateParameters(metadata, entity, changedColumns));
+        }
+
+        int affectedRowsCount = 0;
+        OptimisticLockException conflict = null;
+
+        try {
+            for (Map.Entry<String, List<Object>> entry : entitiesBySql.entrySet()) {
+                List<Object> entities = entry.getValue();
+                int[] updateCounts = jdbcTemplate.executeBatch(entry.getKey(), parametersBySql.get(entry.getKey()));
+                aggregates.invalidate(entry.getKey(), jdbcTemplate.isAutoCommit());
+
+                for (int i = 0; i < entities.size(); i++) {
+                    Object entity = entities.get(i);
+                    EntityMetadata<?> metadata = EntityMetadata.of(entity.getClass());
+
+                    // 드라이버가 행 수를 알려주지 않는 경우(SUCCESS_NO_INFO)는 성공으로 본다.
+                    if (updateCounts[i] == 0 && metadata.isVersioned()) {
+                        OptimisticLockException exception = new OptimisticLockException(entity.getClass(),
+                                metadata.read(entity, EntityMetadata.ID_COLUMN),
+                                metadata.read(entity, EntityMetadata.VERSION_COLUMN));
+
+                        if (conflict == null) {
+                            conflict = exception;
+                        } else {
+                            conflict.addSuppressed(exception);
+                        }
+                        continue;
+                    }
+
+                    if (metadata.isVersioned()) {
+                        long version = ((Number) metadata.read(entity, EntityMetadata.VERSION_COLUMN)).longValue();
+                        metadata.write(entity, EntityMetadata.VERSION_COLUMN, version + 1);
+                    }
+
+                    affectedRowsCount += Math.max(updateCounts[i], 0);
+                    track(entity);
+                    flushedEntities.add(entity);
+                }
+            }
+        } finally {
+            savedEntities.removeAll(flushedEntities);
+            saveOrder.removeIf(flushedEntities::contains);
+        }
+
+        if (conflict != null) {
+            throw conflict;
+        }
+
+        return affectedRowsCount;
+    }
+
+    void clear() {
+        snapshots.clear();
+        versionlessEntities.clear();
+        savedEntities.clear();
+        saveOrder.clear();
+    }
+
+    private List<String> changedColumns(EntityMetadata<?> metadata, Object entity) {
+        Object[] snapshot = snapshots.get(entity);
+        List<String> columnNames = metadata.getColumnNames();
+        List<String> changedColumns = new ArrayList<>();
+
+        for (int i = 0; i < columnNames.size(); i++) {
+            String column = columnNames.get(i);
+            if (column.equals(EntityMetadata.ID_COLUMN) || column.equals(EntityMetadata.VERSION_COLUMN)) {
+                continue;
+            }
+
+            if (!Objects.equals(snapshot[i], metadata.read(entity, column))) {
+                changedColumns.add(column);
+            }
+        }
+
+        return changedColumns;
+    }
+
+    private String updateSql(EntityMetadata<?> metadata, List<String> changedColumns) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(metadata.getTableName()).append(" SET ");
+
+        for (int i = 0; i < changedColumns.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(changedColumns.get(i)).append(" = ?");
+        }
+
+        if (metadata.isVersioned()) {
+            return sql.append(", version = version + 1 WHERE id = ? AND version = ?").toString();
+        }
+
+        return sql.append(" WHERE id = ?").toString();
+    }
+
+    private List<Object> updateParameters(EntityMetadata<?> metadata, Object entity, List<String> changedColumns) {
+        List<Object> parameters = new ArrayList<>(changedColumns.size() + 2);
+
+        for (String column : changedColumns) {
+            parameters.add(metadata.read(entity, column));
+        }
+
+        parameters.add(metadata.read(entity, EntityMetadata.ID_COLUMN));
+        if (metadata.isVersioned()) {
+            parameters.add(metadata.read(entity, EntityMetadata.VERSION_COLUMN));
+        }
+
+        return parameters;
+    }
+}
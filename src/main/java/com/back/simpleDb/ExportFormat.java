@@ -0,0 +1,6 @@
+package com.back.simpleDb;
+
+public enum ExportFormat {
+    CSV,
+    COLUMNAR
+}
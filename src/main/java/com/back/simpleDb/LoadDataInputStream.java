@@ -0,0 +1,117 @@
+package com.back.simpleDb;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * 행을 읽히는 만큼만 LOAD DATA 형식(탭 구분, 줄바꿈 종료, 백슬래시 이스케이프)으로 인코딩한다.
+ */
+class LoadDataInputStream extends InputStream {
+
+    private static final int FILL_THRESHOLD = 64 * 1024;
+    private static final DateTimeFormatter DATETIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+
+    private final Iterator<Object[]> rows;
+    private byte[] buffer = new byte[FILL_THRESHOLD * 2];
+    private int position;
+    private int limit;
+
+    LoadDataInputStream(Iterator<Object[]> rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public int read() {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !fill()) {
+            return -1;
+        }
+
+        int length = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, length);
+        position += length;
+
+        return length;
+    }
+
+    private boolean fill() {
+        position = 0;
+        limit = 0;
+
+        while (limit < FILL_THRESHOLD && rows.hasNext()) {
+            writeRow(rows.next());
+        }
+
+        return limit > 0;
+    }
+
+    private void writeRow(Object[] row) {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writeByte('\t');
+            }
+            writeValue(row[i]);
+        }
+
+        writeByte('\n');
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            writeByte('\\');
+            writeByte('N');
+            return;
+        }
+
+        byte[] bytes;
+        if (value instanceof byte[] raw) {
+            bytes = raw;
+        } else if (value instanceof Boolean bool) {
+            bytes = bool ? new byte[]{'1'} : new byte[]{'0'};
+        } else if (value instanceof LocalDateTime dateTime) {
+            bytes = DATETIME_FORMAT.format(dateTime).getBytes(StandardCharsets.US_ASCII);
+        } else {
+            bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        // UTF-8 의 멀티바이트 문자에는 ASCII 바이트가 섞이지 않으므로 바이트 단위로 이스케이프해도 안전하다.
+        for (byte b : bytes) {
+            switch (b) {
+                case '\\' -> writeEscaped('\\');
+                case '\t' -> writeEscaped('t');
+                case '\n' -> writeEscaped('n');
+                case '\r' -> writeEscaped('r');
+                case 0 -> writeEscaped('0');
+                default -> writeByte(b);
+            }
+        }
+    }
+
+    private void writeEscaped(char c) {
+        writeByte('\\');
+        writeByte(c);
+    }
+
+    private void writeByte(int b) {
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        buffer[limit++] = (byte) b;
+    }
+}
@@ -0,0 +1,30 @@
+package com.back.simpleDb;
+
+import java.util.function.Consumer;
+
+/**
+ * binlog 대신 직접 이벤트를 넣는 테스트용 이벤트 소스. publish 한 스레드에서 바로 전달된다.
+ */
+public class LocalChangeEventSource implements ChangeEventSource {
+
+    private volatile Consumer<ChangeEvent> sink;
+
+    @Override
+    public void start(Consumer<ChangeEvent> sink) {
+        this.sink = sink;
+    }
+
+    public void publish(ChangeEvent event) {
+        Consumer<ChangeEvent> current = sink;
+        if (current == null) {
+            throw new IllegalStateException("이벤트 소스가 시작되지 않았습니다.");
+        }
+
+        current.accept(event);
+    }
+
+    @Override
+    public void close() {
+        sink = null;
+    }
+}
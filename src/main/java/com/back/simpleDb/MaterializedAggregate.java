@@ -0,0 +1,235 @@
+package com.back.simpleDb;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * 테이블의 COUNT(*) 또는 SUM(column) 을 동등 조건 필터로 한 번 계산해 두고,
+ * Sql 로 실행된 INSERT/UPDATE/DELETE 의 변경분만큼 값을 더해 가는 집계다.
+ * 읽기는 LongAdder 의 합만 구하므로 락이 없다.
+ * 변경분 반영은 읽기 락, reconcile 은 쓰기 락을 잡으므로 서로 섞이지 않는다.
+ */
+public class MaterializedAggregate {
+
+    public enum Function {
+        COUNT, SUM
+    }
+
+    private static final Pattern IDENTIFIER = Pattern.compile("\\w+");
+
+    private final MaterializedAggregates registry;
+    private final Function function;
+    private final String table;
+    private final String column;
+    private final Map<String, Object> filters;
+    private final Map<String, Object> normalizedFilters = new LinkedHashMap<>();
+    private final List<String> referencedColumns = new ArrayList<>();
+    private final String selectSql;
+    private final List<Object> selectParameters = new ArrayList<>();
+
+    private final LongAdder value = new LongAdder();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile long generation;
+    private volatile boolean stale = true;
+
+    MaterializedAggregate(MaterializedAggregates registry, Function function, String table, String column,
+                          Map<String, Object> filters) {
+        requireIdentifier(table);
+        if (function == Function.SUM) {
+            requireIdentifier(column);
+        }
+
+        this.registry = registry;
+        this.function = function;
+        this.table = table;
+        this.column = column;
+        this.filters = Collections.unmodifiableMap(new LinkedHashMap<>(filters));
+
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(function == Function.COUNT ? "COUNT(*)" : "COALESCE(SUM(" + column + "), 0)")
+                .append(" FROM ").append(table);
+
+        String delimiter = " WHERE ";
+        for (Map.Entry<String, Object> filter : this.filters.entrySet()) {
+            requireIdentifier(filter.getKey());
+            sql.append(delimiter).append(filter.getKey());
+
+            if (filter.getValue() == null) {
+                sql.append(" IS NULL");
+            } else {
+                sql.append(" = ?");
+                selectParameters.add(filter.getValue());
+            }
+
+            normalizedFilters.put(filter.getKey(), normalize(filter.getValue()));
+            referencedColumns.add(filter.getKey());
+            delimiter = " AND ";
+        }
+
+        if (column != null) {
+            referencedColumns.add(column);
+        }
+
+        this.selectSql = sql.toString();
+    }
+
+    /**
+     * 값이 stale 로 표시되어 있으면 데이터베이스에서 다시 계산한 뒤 돌려준다.
+     */
+    public long get() {
+        if (stale) {
+            registry.reconcile(this);
+        }
+
+        return value.sum();
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Map<String, Object> getFilters() {
+        return filters;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * 변경분 계산에 필요한 컬럼. (필터 컬럼과 SUM 컬럼)
+     */
+    List<String> getReferencedColumns() {
+        return referencedColumns;
+    }
+
+    boolean watches(String table) {
+        return this.table.equalsIgnoreCase(table);
+    }
+
+    /**
+     * reconcile 이 끝날 때마다 1 증가한다. 쓰기 전에 읽어 두었다가 add 에 넘긴다.
+     */
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 다시 계산하는 동안 변경분 반영을 막고, 차이만 더해 조회 중에도 값이 0 이 되지 않게 한다.
+     * 계산 중에 들어온 stale 표시는 남도록 stale 을 먼저 내린다.
+     */
+    void reconcile(SimpleDb simpleDb) {
+        lock.writeLock().lock();
+        try {
+            stale = false;
+
+            long actual;
+            try {
+                actual = simpleDb.genSql()
+                                 .append(selectSql, selectParameters.toArray())
+                                 .selectLong();
+            } catch (RuntimeException e) {
+                stale = true;
+                throw e;
+            }
+
+            value.add(actual - value.sum());
+            // 계산 중에 커밋된 쓰기는 결과에 들어갔을 수 있으므로, 그 쓰기의 변경분은 버려지게 한다.
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * generation 은 쓰기(커밋) 전에 읽은 값이다. 그 사이 reconcile 이 있었다면 그 결과에
+     * 이 변경이 들어갔는지 알 수 없으므로 더하지 않고 stale 로 표시한다.
+     */
+    void add(long delta, long generation) {
+        lock.readLock().lock();
+        try {
+            if (this.generation == generation) {
+                value.add(delta);
+            } else {
+                stale = true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void markStale() {
+        stale = true;
+    }
+
+    /**
+     * 행 하나가 이 집계에 더하는 값. 필터에 맞지 않으면 0 이다.
+     */
+    long contribution(Map<String, Object> row) {
+        for (Map.Entry<String, Object> filter : normalizedFilters.entrySet()) {
+            if (!Objects.equals(filter.getValue(), normalize(row.get(filter.getKey())))) {
+                return 0;
+            }
+        }
+
+        if (function == Function.COUNT) {
+            return 1;
+        }
+
+        return row.get(column) instanceof Number number ? number.longValue() : 0;
+    }
+
+    /**
+     * 드라이버마다 다른 숫자/불리언 타입을 같은 값끼리 비교할 수 있게 맞춘다.
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Boolean bool) {
+            return bool ? 1L : 0L;
+        }
+        if (value instanceof Byte || value instanceof Short || value instanceof Integer
+                || value instanceof Long || value instanceof BigInteger) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigDecimal decimal) {
+            try {
+                return decimal.longValueExact();
+            } catch (ArithmeticException e) {
+                return decimal.stripTrailingZeros();
+            }
+        }
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+
+        return value;
+    }
+
+    private static void requireIdentifier(String name) {
+        if (name == null || !IDENTIFIER.matcher(name).matches()) {
+            throw new IllegalArgumentException("잘못된 식별자: " + name);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return selectSql + " " + selectParameters;
+    }
+}
@@ -0,0 +1,397 @@
+package com.back.simpleDb;
+
+import java.sql.Connection;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SimpleDb 에 선언된 MaterializedAggregate 들을 Sql 의 쓰기 경로에서 갱신한다.
+ * UPDATE/DELETE 는 같은 WHERE 로 바뀔 행을 먼저 읽고(pre-image), UPDATE 는 실행 후 그 행들을 다시 읽어 차이만 더한다.
+ * 이때 id 와 집계가 참조하는 컬럼만 읽고, 트랜잭션 안에서는 FOR UPDATE 로 잠그며 읽는다.
+ * 배치처럼 변경분을 계산할 수 없는 쓰기는 해당 집계를 stale 로 표시하고, 다음 조회나 주기적 reconcile 때 다시 계산한다.
+ * 트랜잭션 안의 변경분은 스레드별로 모아 두었다가 commit 때 반영하고 rollback 때 버린다.
+ */
+class MaterializedAggregates {
+
+    private static final int MAX_TRACKED_ROWS = 1000;
+
+    private static final Pattern WRITE_TARGET = Pattern.compile(
+            "^\\s*(INSERT(?:\\s+IGNORE)?\\s+INTO|REPLACE(?:\\s+INTO)?|UPDATE(?:\\s+IGNORE)?|DELETE\\s+FROM|TRUNCATE(?:\\s+TABLE)?)\\s+`?(\\w+)`?",
+            Pattern.CASE_INSENSITIVE
+    );
+    private static final Pattern UPDATE_SET = Pattern.compile("^\\s+SET\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DELETE_TAIL = Pattern.compile("^\\s*(?:WHERE\\s.*)?$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final ResultSetExtractor<List<Map<String, Object>>> TRACKED_ROWS_EXTRACTOR = rs -> {
+        List<Map<String, Object>> rows = new ArrayList<>();
+
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+
+        while (rs.next()) {
+            if (rows.size() == MAX_TRACKED_ROWS) {
+                return null;
+            }
+
+            Map<String, Object> row = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = 1; i <= columnCount; i++) {
+                row.put(metaData.getColumnLabel(i), Sql.getValue(rs, i));
+            }
+
+            rows.add(row);
+        }
+
+        return rows;
+    };
+
+    private final SimpleDb simpleDb;
+    private final List<MaterializedAggregate> aggregates = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<PendingChanges> pendingThreadLocal = new ThreadLocal<>();
+    private final ScheduledThreadPoolExecutor executor;
+    private ScheduledFuture<?> reconciliation;
+
+    MaterializedAggregates(SimpleDb simpleDb) {
+        this.simpleDb = simpleDb;
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "simpleDb-aggregate");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    MaterializedAggregate declare(MaterializedAggregate.Function function, String table, String column,
+                                  Map<String, Object> filters) {
+        MaterializedAggregate aggregate = new MaterializedAggregate(this, function, table, column, filters);
+        aggregates.add(aggregate);
+        aggregate.get();
+
+        return aggregate;
+    }
+
+    void remove(MaterializedAggregate aggregate) {
+        aggregates.remove(aggregate);
+    }
+
+    /**
+     * 집계는 커밋된 값만 세어야 하므로, 호출한 스레드의 트랜잭션과 무관한 백그라운드 커넥션에서 다시 계산한다.
+     */
+    void reconcile(MaterializedAggregate aggregate) {
+        await(executor.submit(() -> reconcileOn(List.of(aggregate))));
+    }
+
+    void reconcileAll() {
+        await(executor.submit(() -> reconcileOn(aggregates)));
+    }
+
+    synchronized void startReconciliation(long intervalMillis) {
+        stopReconciliation();
+        reconciliation = executor.scheduleWithFixedDelay(
+                () -> reconcileOn(aggregates), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stopReconciliation() {
+        if (reconciliation != null) {
+            reconciliation.cancel(false);
+            reconciliation = null;
+        }
+    }
+
+    long executeInsert(MyJdbcTemplate jdbcTemplate, String sql, List<Object> parameters) {
+        List<MaterializedAggregate> watching = watching(sql);
+        if (watching.isEmpty()) {
+            return jdbcTemplate.executeInsert(sql, parameters);
+        }
+
+        return insert(jdbcTemplate, sql, parameters, watching).generatedKey();
+    }
+
+    int executeUpdate(MyJdbcTemplate jdbcTemplate, String sql, List<Object> parameters) {
+        List<MaterializedAggregate> watching = watching(sql);
+        if (watching.isEmpty()) {
+            return jdbcTemplate.executeUpdate(sql, parameters);
+        }
+
+        Matcher matcher = WRITE_TARGET.matcher(sql);
+        matcher.find();
+        String verb = matcher.group(1).toUpperCase();
+        String table = matcher.group(2);
+        String tail = sql.substring(matcher.end());
+
+        if (verb.startsWith("INSERT")) {
+            return insert(jdbcTemplate, sql, parameters, watching).affectedRowsCount();
+        }
+
+        boolean trackable = verb.startsWith("UPDATE") && UPDATE_SET.matcher(tail).find()
+                || verb.startsWith("DELETE") && DELETE_TAIL.matcher(tail).matches();
+        int whereIndex = trackable ? SqlScanner.topLevelWhereIndex(sql, matcher.end()) : -1;
+
+        if (whereIndex < 0) {
+            int affectedRowsCount = jdbcTemplate.executeUpdate(sql, parameters);
+            markStale(watching, jdbcTemplate.isAutoCommit());
+            return affectedRowsCount;
+        }
+
+        // 트랜잭션 안에서는 일반 SELECT 가 스냅샷을 읽을 수 있으므로, 바뀔 최신 행을 잠그며 읽는다.
+        boolean autoCommit = jdbcTemplate.isAutoCommit();
+        String columns = trackedColumns(watching);
+        int whereParameterIndex = SqlScanner.countPlaceholders(sql, whereIndex);
+        List<Map<String, Object>> before = jdbcTemplate.queryOnCurrentConnection(
+                "SELECT " + columns + " FROM " + table + " " + sql.substring(whereIndex)
+                        + (autoCommit ? "" : " FOR UPDATE"),
+                parameters.subList(whereParameterIndex, parameters.size()),
+                TRACKED_ROWS_EXTRACTOR
+        );
+
+        long[] generations = generations(watching);
+        int affectedRowsCount = jdbcTemplate.executeUpdate(sql, parameters);
+
+        if (before == null) {
+            markStale(watching, autoCommit);
+            return affectedRowsCount;
+        }
+
+        List<Map<String, Object>> after = verb.startsWith("UPDATE")
+                ? selectByIds(jdbcTemplate, table, columns, before)
+                : List.of();
+
+        if (after == null) {
+            markStale(watching, autoCommit);
+        } else {
+            applyChanges(watching, generations, before, after, autoCommit);
+        }
+
+        return affectedRowsCount;
+    }
+
+    boolean isWatching(String sql) {
+        return !watching(sql).isEmpty();
+    }
+
+    /**
+     * 변경분을 알 수 없는 쓰기(run, bulkLoad, 배치)는 대상 테이블의 집계를 stale 로 표시한다.
+     */
+    void invalidate(String sql, boolean autoCommit) {
+        markStale(watching(sql), autoCommit);
+    }
+
+    void invalidateTable(String table, boolean autoCommit) {
+        markStale(watchingTable(table), autoCommit);
+    }
+
+    /**
+     * 트랜잭션의 변경분은 커밋 시점에 반영되므로, 커밋 전에 읽은 generation 으로 더한다.
+     */
+    void commit(Connection connection) throws SQLException {
+        PendingChanges pending = pendingThreadLocal.get();
+        pendingThreadLocal.remove();
+
+        if (pending == null) {
+            connection.commit();
+            return;
+        }
+
+        Map<MaterializedAggregate, Long> generations = new HashMap<>();
+        pending.deltas.keySet().forEach(aggregate -> generations.put(aggregate, aggregate.getGeneration()));
+
+        connection.commit();
+
+        pending.deltas.forEach((aggregate, delta) -> aggregate.add(delta, generations.get(aggregate)));
+        pending.staled.forEach(MaterializedAggregate::markStale);
+    }
+
+    void discardPending() {
+        pendingThreadLocal.remove();
+    }
+
+    private MyJdbcTemplate.InsertResult insert(MyJdbcTemplate jdbcTemplate, String sql, List<Object> parameters,
+                                               List<MaterializedAggregate> watching) {
+        long[] generations = generations(watching);
+        MyJdbcTemplate.InsertResult result = jdbcTemplate.executeInsertForResult(sql, parameters);
+        boolean autoCommit = jdbcTemplate.isAutoCommit();
+
+        if (result.affectedRowsCount() == 0) {
+            return result;
+        }
+
+        List<Map<String, Object>> inserted = null;
+        if (result.affectedRowsCount() == 1 && result.generatedKey() > 0) {
+            Matcher matcher = WRITE_TARGET.matcher(sql);
+            matcher.find();
+
+            inserted = jdbcTemplate.queryOnCurrentConnection(
+                    "SELECT " + trackedColumns(watching) + " FROM " + matcher.group(2)
+                            + " WHERE " + EntityMetadata.ID_COLUMN + " = ?",
+                    List.of(result.generatedKey()),
+                    TRACKED_ROWS_EXTRACTOR
+            );
+        }
+
+        if (inserted == null || inserted.size() != 1) {
+            markStale(watching, autoCommit);
+        } else {
+            applyChanges(watching, generations, List.of(), inserted, autoCommit);
+        }
+
+        return result;
+    }
+
+    private List<Map<String, Object>> selectByIds(MyJdbcTemplate jdbcTemplate, String table, String columns,
+                                                  List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+
+        List<Object> ids = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Object id = row.get(EntityMetadata.ID_COLUMN);
+            if (id == null) {
+                return null;
+            }
+
+            ids.add(id);
+        }
+
+        return jdbcTemplate.queryOnCurrentConnection(
+                "SELECT " + columns + " FROM " + table + " WHERE " + EntityMetadata.ID_COLUMN
+                        + " IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")",
+                ids,
+                TRACKED_ROWS_EXTRACTOR
+        );
+    }
+
+    /**
+     * 본문 같은 큰 컬럼까지 읽지 않도록 id 와 집계가 참조하는 컬럼만 고른다.
+     */
+    private static String trackedColumns(List<MaterializedAggregate> watching) {
+        Set<String> columns = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        columns.add(EntityMetadata.ID_COLUMN);
+
+        for (MaterializedAggregate aggregate : watching) {
+            columns.addAll(aggregate.getReferencedColumns());
+        }
+
+        return String.join(", ", columns);
+    }
+
+    private static long[] generations(List<MaterializedAggregate> watching) {
+        long[] generations = new long[watching.size()];
+        for (int i = 0; i < generations.length; i++) {
+            generations[i] = watching.get(i).getGeneration();
+        }
+
+        return generations;
+    }
+
+    private void applyChanges(List<MaterializedAggregate> watching, long[] generations,
+                              List<Map<String, Object>> before, List<Map<String, Object>> after, boolean autoCommit) {
+        for (int i = 0; i < watching.size(); i++) {
+            MaterializedAggregate aggregate = watching.get(i);
+            long delta = 0;
+            for (Map<String, Object> row : after) {
+                delta += aggregate.contribution(row);
+            }
+            for (Map<String, Object> row : before) {
+                delta -= aggregate.contribution(row);
+            }
+
+            if (delta == 0) {
+                continue;
+            }
+
+            if (autoCommit) {
+                aggregate.add(delta, generations[i]);
+            } else {
+                pending().deltas.merge(aggregate, delta, Long::sum);
+            }
+        }
+    }
+
+    private void markStale(List<MaterializedAggregate> watching, boolean autoCommit) {
+        for (MaterializedAggregate aggregate : watching) {
+            if (autoCommit) {
+                aggregate.markStale();
+            } else {
+                pending().staled.add(aggregate);
+            }
+        }
+    }
+
+    private PendingChanges pending() {
+        PendingChanges pending = pendingThreadLocal.get();
+        if (pending == null) {
+            pending = new PendingChanges();
+            pendingThreadLocal.set(pending);
+        }
+
+        return pending;
+    }
+
+    private List<MaterializedAggregate> watching(String sql) {
+        if (aggregates.isEmpty()) {
+            return List.of();
+        }
+
+        Matcher matcher = WRITE_TARGET.matcher(sql);
+        return matcher.find() ? watchingTable(matcher.group(2)) : List.of();
+    }
+
+    private List<MaterializedAggregate> watchingTable(String table) {
+        List<MaterializedAggregate> watching = new ArrayList<>();
+        for (MaterializedAggregate aggregate : aggregates) {
+            if (aggregate.watches(table)) {
+                watching.add(aggregate);
+            }
+        }
+
+        return watching;
+    }
+
+    private void reconcileOn(List<MaterializedAggregate> targets) {
+        try {
+            for (MaterializedAggregate aggregate : targets) {
+                aggregate.reconcile(simpleDb);
+            }
+        } finally {
+            simpleDb.close();
+        }
+    }
+
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static class PendingChanges {
+        private final Map<MaterializedAggregate, Long> deltas = new HashMap<>();
+        private final Set<MaterializedAggregate> staled = new HashSet<>();
+    }
+}
@@ -0,0 +1,9 @@
+package com.back.simpleDb;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+@FunctionalInterface
+public interface MultiResultHandler {
+    void handle(Statement statement, boolean hasResultSet) throws SQLException;
+}
@@ -2,22 +2,42 @@ package com.back.simpleDb;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
 import java.sql.Statement;
 import java.util.List;
+import java.util.function.Supplier;
 
 @Slf4j
 public class MyJdbcTemplate {
 
-    private final Connection connection;
+    private static final int STREAMING_FETCH_SIZE = 1_000;
+
+    private Connection connection;
     private final boolean devMode;
+    private final Supplier<Connection> reconnector;
+    private final QueryPlanAnalyzer queryPlanAnalyzer;
 
     public MyJdbcTemplate(Connection connection, boolean devMode) {
+        this(connection, devMode, null, null);
+    }
+
+    public MyJdbcTemplate(Connection connection, boolean devMode, Supplier<Connection> reconnector) {
+        this(connection, devMode, reconnector, null);
+    }
+
+    MyJdbcTemplate(Connection connection, boolean devMode, Supplier<Connection> reconnector, QueryPlanAnalyzer queryPlanAnalyzer) {
         this.connection = connection;
         this.devMode = devMode;
+        this.reconnector = reconnector;
+        this.queryPlanAnalyzer = queryPlanAnalyzer;
     }
 
     public int executeUpdate(String sql, List<Object> parameters) {
@@ -33,31 +53,78 @@ public class MyJdbcTemplate {
     }
 
     public int executeInsert(String sql, List<Object> parameters) {
+        return (int) executeInsertForResult(sql, parameters).generatedKey();
+    }
+
+    InsertResult executeInsertForResult(String sql, List<Object> parameters) {
         try (PreparedStatement pstm = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             setParameters(parameters, pstm);
 
-            pstm.executeUpdate();
+            int affectedRowsCount = pstm.executeUpdate();
             ResultSet rs = pstm.getGeneratedKeys();
 
             if (rs.next()) {
-                return rs.getInt(1);
+                return new InsertResult(rs.getLong(1), affectedRowsCount);
             }
 
+            return new InsertResult(-1, affectedRowsCount);
+
         } catch (SQLException e) {
             throw new RuntimeException(e);
         } finally {
             logQuery(sql, parameters);
         }
+    }
 
-        return -1;
+    public int[] executeBatch(String sql, List<List<Object>> parameterSets) {
+        try (PreparedStatement pstm = connection.prepareStatement(sql)) {
+            for (List<Object> parameters : parameterSets) {
+                setParameters(parameters, pstm);
+                pstm.addBatch();
+            }
+
+            return pstm.executeBatch();
+
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            logQuery(sql, parameterSets);
+        }
+    }
+
+    /**
+     * 여러 결과를 돌려주는 SQL(multi statement)을 실행하고 결과 처리를 handler 에 맡긴다.
+     */
+    public void executeMulti(String sql, List<Object> parameters, MultiResultHandler handler) {
+        try (PreparedStatement pstm = connection.prepareStatement(sql)) {
+            setParameters(parameters, pstm);
+            handler.handle(pstm, pstm.execute());
+
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            logQuery(sql, parameters);
+        }
     }
 
     public <T> T query(String sql, List<Object> parameters, ResultSetExtractor<T> rse) {
-        try (PreparedStatement pstm = connection.prepareStatement(sql);
-             ResultSet rs = executeQuery(pstm, parameters)) {
+        return query(sql, parameters, false, rse);
+    }
 
-            return rse.extractData(rs);
+    /**
+     * 결과를 드라이버 메모리에 모두 올리지 않고 행 단위로 가져오며 처리한다.
+     */
+    public <T> T queryStreaming(String sql, List<Object> parameters, ResultSetExtractor<T> rse) {
+        return query(sql, parameters, true, rse);
+    }
 
+    /**
+     * 라이브러리 내부 조회용. 실행 계획 샘플링과 재연결 재시도 없이 지금 커넥션에서만 실행한다.
+     * (트랜잭션 안의 FOR UPDATE 조회를 다른 커넥션에서 다시 하면 안 된다)
+     */
+    <T> T queryOnCurrentConnection(String sql, List<Object> parameters, ResultSetExtractor<T> rse) {
+        try {
+            return doQuery(sql, parameters, false, rse);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         } finally {
@@ -65,6 +132,104 @@ public class MyJdbcTemplate {
         }
     }
 
+    private <T> T query(String sql, List<Object> parameters, boolean streaming, ResultSetExtractor<T> rse) {
+        try {
+            T result;
+            try {
+                result = doQuery(sql, parameters, streaming, rse);
+            } catch (SQLException e) {
+                Connection reconnected = isRetryable(e, streaming, parameters) ? reconnector.get() : null;
+                if (reconnected == null) {
+                    throw e;
+                }
+
+                log.warn("커넥션이 끊어져 재연결 후 조회를 다시 시도합니다. : {}", e.getMessage());
+                connection = reconnected;
+
+                try {
+                    result = doQuery(sql, parameters, streaming, rse);
+                } catch (SQLException retryException) {
+                    retryException.addSuppressed(e);
+                    throw retryException;
+                }
+            }
+
+            if (queryPlanAnalyzer != null) {
+                queryPlanAnalyzer.sample(sql, parameters);
+            }
+
+            return result;
+
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            logQuery(sql, parameters);
+        }
+    }
+
+    /**
+     * 스트리밍 조회는 결과를 받는 쪽에 이미 일부를 썼을 수 있고, 스트림 파라미터는 이미 읽혔으므로 다시 실행하지 않는다.
+     */
+    private boolean isRetryable(SQLException e, boolean streaming, List<Object> parameters) {
+        if (reconnector == null || streaming || !isConnectionFailure(e)) {
+            return false;
+        }
+
+        for (Object parameter : parameters) {
+            if (parameter instanceof InputStream || parameter instanceof Reader) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private <T> T doQuery(String sql, List<Object> parameters, boolean streaming, ResultSetExtractor<T> rse) throws SQLException {
+        try (PreparedStatement pstm = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            if (streaming) {
+                pstm.setFetchSize(streamingFetchSize());
+            }
+
+            try (ResultSet rs = executeQuery(pstm, parameters)) {
+                return rse.extractData(rs);
+            }
+        }
+    }
+
+    private int streamingFetchSize() throws SQLException {
+        // MySQL 드라이버는 Integer.MIN_VALUE 를 받아야 행 단위 스트리밍을 한다.
+        return "MySQL".equals(connection.getMetaData().getDatabaseProductName())
+                ? Integer.MIN_VALUE
+                : STREAMING_FETCH_SIZE;
+    }
+
+    boolean isAutoCommit() {
+        try {
+            return connection.getAutoCommit();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean isConnectionFailure(SQLException e) {
+        return e instanceof SQLRecoverableException
+                || e instanceof SQLTransientConnectionException
+                || e instanceof SQLNonTransientConnectionException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("08"))
+                || isClosed();
+    }
+
+    /**
+     * 이미 닫힌 커넥션에 대한 오류 코드는 드라이버마다 다르다. (H2 는 08 이 아닌 90007)
+     */
+    private boolean isClosed() {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
     private ResultSet executeQuery(PreparedStatement pstm, List<Object> parameters) throws SQLException {
         setParameters(parameters, pstm);
         return pstm.executeQuery();
@@ -72,13 +237,24 @@ public class MyJdbcTemplate {
 
     private void setParameters(List<Object> parameters, PreparedStatement pstm) throws SQLException {
         for (int i = 0; i < parameters.size(); i++) {
-            pstm.setObject(i + 1, parameters.get(i));
+            Object parameter = parameters.get(i);
+
+            if (parameter instanceof InputStream in) {
+                pstm.setBinaryStream(i + 1, in);
+            } else if (parameter instanceof Reader reader) {
+                pstm.setCharacterStream(i + 1, reader);
+            } else {
+                pstm.setObject(i + 1, parameter);
+            }
         }
     }
 
-    private void logQuery(String sql, List<Object> parameters) {
+    private void logQuery(String sql, List<?> parameters) {
         if (devMode) {
             log.info("\n[Query] : {} \n[Parameters] : {}\n", sql, parameters);
         }
     }
+
+    record InsertResult(long generatedKey, int affectedRowsCount) {
+    }
 }
@@ -0,0 +1,45 @@
+package com.back.simpleDb;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 커넥션이 실제로 어떤 MySQL 드라이버 옵션으로 열렸는지 확인한다.
+ * URL 이나 DataSource 를 직접 받은 경우 SimpleDb 의 설정값만으로는 옵션이 켜졌는지 알 수 없다.
+ */
+class MySqlConnectionProperties {
+
+    private static final String MYSQL_CONNECTION_CLASS = "com.mysql.cj.jdbc.JdbcConnection";
+
+    static final String ALLOW_LOAD_LOCAL_INFILE = "allowLoadLocalInfile";
+    static final String ALLOW_MULTI_QUERIES = "allowMultiQueries";
+
+    private MySqlConnectionProperties() {
+    }
+
+    /**
+     * MySQL 커넥션이 아니거나 드라이버에서 값을 읽을 수 없으면 false 로 본다.
+     */
+    static boolean isEnabled(Connection connection, String propertyName) {
+        try {
+            if (!"MySQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                return false;
+            }
+
+            Class<?> mysqlConnectionClass = Class.forName(MYSQL_CONNECTION_CLASS);
+            if (!connection.isWrapperFor(mysqlConnectionClass)) {
+                return false;
+            }
+
+            Object propertySet = mysqlConnectionClass.getMethod("getPropertySet")
+                                                     .invoke(connection.unwrap(mysqlConnectionClass));
+            Method getBooleanProperty = propertySet.getClass().getMethod("getBooleanProperty", String.class);
+            Object property = getBooleanProperty.invoke(propertySet, propertyName);
+
+            return Boolean.TRUE.equals(property.getClass().getMethod("getValue").invoke(property));
+        } catch (SQLException | ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+}
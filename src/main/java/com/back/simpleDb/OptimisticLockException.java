@@ -0,0 +1,28 @@
+package com.back.simpleDb;
+
+public class OptimisticLockException extends RuntimeException {
+
+    private final Class<?> entityClass;
+    private final Object id;
+    private final Object expectedVersion;
+
+    public OptimisticLockException(Class<?> entityClass, Object id, Object expectedVersion) {
+        super("%s(id=%s) 가 다른 곳에서 먼저 수정되었습니다. (version=%s)"
+                .formatted(entityClass.getSimpleName(), id, expectedVersion));
+        this.entityClass = entityClass;
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public Object getId() {
+        return id;
+    }
+
+    public Object getExpectedVersion() {
+        return expectedVersion;
+    }
+}
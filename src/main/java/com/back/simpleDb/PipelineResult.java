@@ -0,0 +1,24 @@
+package com.back.simpleDb;
+
+public class PipelineResult<T> {
+
+    private T value;
+    private boolean completed;
+
+    public T get() {
+        if (!completed) {
+            throw new IllegalStateException("파이프라인이 아직 실행되지 않았습니다.");
+        }
+
+        return value;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    void complete(T value) {
+        this.value = value;
+        this.completed = true;
+    }
+}
@@ -0,0 +1,192 @@
+package com.back.simpleDb;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 완성된 SQL 과 고정 크기 파라미터 배열을 들고 있는 쿼리.
+ * 같은 스레드의 같은 커넥션이면 PreparedStatement 도 다시 쓰므로, 반복 실행 시 결과 외에는 새로 할당하지 않는다.
+ * 바인딩 값을 들고 있으므로 스레드 간에 공유하지 않는다.
+ */
+@Slf4j
+public class PreparedQuery implements AutoCloseable {
+
+    private final SimpleDb simpleDb;
+    private final String sql;
+
+    private final Object[] values;
+    private final long[] longValues;
+    private final boolean[] longBound;
+    private final List<Object> parameterView;
+
+    private Connection statementConnection;
+    private PreparedStatement statement;
+
+    PreparedQuery(SimpleDb simpleDb, String sql) {
+        this.simpleDb = simpleDb;
+        this.sql = sql.strip();
+
+        int parameterCount = SqlScanner.countPlaceholders(this.sql);
+        this.values = new Object[parameterCount];
+        this.longValues = new long[parameterCount];
+        this.longBound = new boolean[parameterCount];
+        this.parameterView = new AbstractList<>() {
+            @Override
+            public Object get(int index) {
+                return longBound[index] ? longValues[index] : values[index];
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public int getParameterCount() {
+        return values.length;
+    }
+
+    /**
+     * JDBC 와 같이 index 는 1 부터 시작한다.
+     */
+    public PreparedQuery bind(int index, Object value) {
+        values[index - 1] = value;
+        longBound[index - 1] = false;
+        return this;
+    }
+
+    /**
+     * long 값은 박싱하지 않고 setLong 으로 바인딩한다.
+     */
+    public PreparedQuery bind(int index, long value) {
+        longValues[index - 1] = value;
+        longBound[index - 1] = true;
+        return this;
+    }
+
+    public PreparedQuery clearBindings() {
+        Arrays.fill(values, null);
+        Arrays.fill(longBound, false);
+        return this;
+    }
+
+    public long selectLong() {
+        return query(Sql.LONG_EXTRACTOR);
+    }
+
+    public String selectString() {
+        return query(Sql.STRING_EXTRACTOR);
+    }
+
+    public List<Long> selectLongs() {
+        return query(Sql.LONGS_EXTRACTOR);
+    }
+
+    public Map<String, Object> selectRow() {
+        return query(Sql.ROW_EXTRACTOR);
+    }
+
+    public List<Map<String, Object>> selectRows() {
+        return query(Sql.ROWS_EXTRACTOR);
+    }
+
+    public <T> T selectRow(Class<T> cls) {
+        if (cls.isRecord()) {
+            return query(rs -> {
+                RecordRowMapper<T> mapper = RecordRowMapper.of(cls);
+                return rs.next() ? mapper.map(rs, mapper.columnIndexes(rs.getMetaData())) : null;
+            });
+        }
+
+        return query(rs -> rs.next() ? Sql.getInstance(cls, rs) : null);
+    }
+
+    /**
+     * 대상 테이블에 선언된 MaterializedAggregate 가 있으면 변경분을 계산할 수 있도록 집계를 거쳐 실행한다.
+     */
+    public int update() {
+        MaterializedAggregates aggregates = simpleDb.getAggregates();
+        if (aggregates.isWatching(sql)) {
+            return aggregates.executeUpdate(new MyJdbcTemplate(simpleDb.getConnection(), simpleDb.isDevMode()),
+                    sql, new ArrayList<>(parameterView));
+        }
+
+        try {
+            return prepare().executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            logQuery();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+
+            statement = null;
+            statementConnection = null;
+        }
+    }
+
+    private <T> T query(ResultSetExtractor<T> rse) {
+        try (ResultSet rs = prepare().executeQuery()) {
+            T result = rse.extractData(rs);
+
+            QueryPlanAnalyzer analyzer = simpleDb.getQueryPlanAnalyzer();
+            if (analyzer != null) {
+                analyzer.sample(sql, parameterView);
+            }
+
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            logQuery();
+        }
+    }
+
+    private PreparedStatement prepare() throws SQLException {
+        Connection connection = simpleDb.getConnection();
+
+        if (statement == null || statementConnection != connection || statement.isClosed()) {
+            close();
+            statement = connection.prepareStatement(sql);
+            statementConnection = connection;
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            if (longBound[i]) {
+                statement.setLong(i + 1, longValues[i]);
+            } else {
+                statement.setObject(i + 1, values[i]);
+            }
+        }
+
+        return statement;
+    }
+
+    private void logQuery() {
+        if (simpleDb.isDevMode()) {
+            log.info("\n[Query] : {} \n[Parameters] : {}\n", sql, parameterView);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.back.simpleDb;
+
+import java.util.List;
+import java.util.Map;
+
+public record QueryPlan(
+        String shape,
+        boolean fullScan,
+        boolean filesort,
+        boolean temporaryTable,
+        List<Map<String, Object>> explainRows,
+        long explainedAtNanos
+) {
+
+    public boolean isFlagged() {
+        return fullScan || filesort || temporaryTable;
+    }
+
+    /**
+     * MySQL 은 type/Extra 컬럼으로, H2 는 PLAN 문자열로 실행 계획을 돌려준다.
+     */
+    static QueryPlan of(String shape, List<Map<String, Object>> explainRows) {
+        boolean fullScan = false, filesort = false, temporaryTable = false;
+
+        for (Map<String, Object> row : explainRows) {
+            for (Map.Entry<String, Object> column : row.entrySet()) {
+                String name = column.getKey();
+                String value = column.getValue() == null ? "" : column.getValue().toString();
+
+                if (name.equalsIgnoreCase("type")) {
+                    fullScan |= value.equalsIgnoreCase("ALL");
+                } else if (name.equalsIgnoreCase("Extra")) {
+                    filesort |= value.contains("Using filesort");
+                    temporaryTable |= value.contains("Using temporary");
+                } else if (name.equalsIgnoreCase("PLAN")) {
+                    fullScan |= value.contains("tableScan");
+                }
+            }
+        }
+
+        return new QueryPlan(shape, fullScan, filesort, temporaryTable, List.copyOf(explainRows), System.nanoTime());
+    }
+}
@@ -0,0 +1,181 @@
+package com.back.simpleDb;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * 실행된 SELECT 를 samplingRate 비율로 골라, 리터럴을 지운 SQL 모양(shape)별로 한 번씩 백그라운드에서 EXPLAIN 한다.
+ * 풀 스캔, filesort, 임시 테이블을 쓰는 계획은 경고 로그와 리스너, 메트릭으로 알린다.
+ */
+@Slf4j
+public class QueryPlanAnalyzer implements AutoCloseable {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final SimpleDb simpleDb;
+    private final double samplingRate;
+    private volatile long replanIntervalNanos = TimeUnit.MINUTES.toNanos(10);
+
+    private final Map<String, QueryPlan> plans = new ConcurrentHashMap<>();
+    private final Set<String> pendingShapes = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<QueryPlan>> listeners = new CopyOnWriteArrayList<>();
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder sampledQueries = new LongAdder();
+    private final LongAdder explainedShapes = new LongAdder();
+    private final LongAdder fullScans = new LongAdder();
+    private final LongAdder filesorts = new LongAdder();
+    private final LongAdder temporaryTables = new LongAdder();
+
+    QueryPlanAnalyzer(SimpleDb simpleDb, double samplingRate) {
+        if (samplingRate < 0 || samplingRate > 1) {
+            throw new IllegalArgumentException("samplingRate 는 0 이상 1 이하여야 합니다.");
+        }
+
+        this.simpleDb = simpleDb;
+        this.samplingRate = samplingRate;
+        this.executor = new ThreadPoolExecutor(
+                1, 1,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(64),
+                runnable -> {
+                    Thread thread = new Thread(() -> {
+                        try {
+                            runnable.run();
+                        } finally {
+                            simpleDb.close();
+                        }
+                    }, "simpleDb-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    public void setReplanIntervalMillis(long replanIntervalMillis) {
+        this.replanIntervalNanos = TimeUnit.MILLISECONDS.toNanos(replanIntervalMillis);
+    }
+
+    public void addListener(Consumer<QueryPlan> listener) {
+        listeners.add(listener);
+    }
+
+    public Map<String, QueryPlan> getPlans() {
+        return Map.copyOf(plans);
+    }
+
+    public List<QueryPlan> getFlaggedPlans() {
+        return plans.values().stream().filter(QueryPlan::isFlagged).toList();
+    }
+
+    public QueryPlanMetrics getMetrics() {
+        return new QueryPlanMetrics(
+                sampledQueries.sum(),
+                explainedShapes.sum(),
+                fullScans.sum(),
+                filesorts.sum(),
+                temporaryTables.sum(),
+                plans.size()
+        );
+    }
+
+    /**
+     * 조회 경로에서 호출되므로 샘플링에서 빠지면 난수 하나만 만들고 바로 돌아간다.
+     */
+    void sample(String sql, List<Object> parameters) {
+        if (samplingRate == 0 || ThreadLocalRandom.current().nextDouble() >= samplingRate) {
+            return;
+        }
+        if (!isExplainable(sql, parameters)) {
+            return;
+        }
+
+        sampledQueries.increment();
+
+        String shape = normalize(sql);
+        QueryPlan cached = plans.get(shape);
+        if (cached != null && System.nanoTime() - cached.explainedAtNanos() < replanIntervalNanos) {
+            return;
+        }
+        if (!pendingShapes.add(shape)) {
+            return;
+        }
+
+        List<Object> explainParameters = new ArrayList<>(parameters);
+        try {
+            executor.execute(() -> explain(shape, sql, explainParameters));
+        } catch (RejectedExecutionException e) {
+            pendingShapes.remove(shape);
+        }
+    }
+
+    static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = PLACEHOLDER_LIST.matcher(shape).replaceAll("?..");
+        return WHITESPACE.matcher(shape).replaceAll(" ").strip();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void explain(String shape, String sql, List<Object> parameters) {
+        try {
+            List<Map<String, Object>> rows = simpleDb.genSql()
+                                                     .append("EXPLAIN " + sql, parameters.toArray())
+                                                     .selectRows();
+            QueryPlan plan = QueryPlan.of(shape, rows);
+            QueryPlan previous = plans.put(shape, plan);
+
+            explainedShapes.increment();
+            if (plan.fullScan()) fullScans.increment();
+            if (plan.filesort()) filesorts.increment();
+            if (plan.temporaryTable()) temporaryTables.increment();
+
+            if (plan.isFlagged() && (previous == null || !previous.isFlagged())) {
+                log.warn("\n[Query Plan] 비효율적인 실행 계획 : {} \n[fullScan={}, filesort={}, temporary={}]\n",
+                        shape, plan.fullScan(), plan.filesort(), plan.temporaryTable());
+                listeners.forEach(listener -> listener.accept(plan));
+            }
+        } catch (RuntimeException e) {
+            log.debug("EXPLAIN 실패 : {}", shape, e);
+        } finally {
+            pendingShapes.remove(shape);
+        }
+    }
+
+    private boolean isExplainable(String sql, List<Object> parameters) {
+        if (!sql.regionMatches(true, 0, "SELECT", 0, 6)) {
+            return false;
+        }
+
+        for (Object parameter : parameters) {
+            if (parameter instanceof InputStream || parameter instanceof Reader) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,11 @@
+package com.back.simpleDb;
+
+public record QueryPlanMetrics(
+        long sampledQueries,
+        long explainedShapes,
+        long fullScans,
+        long filesorts,
+        long temporaryTables,
+        int cachedShapes
+) {
+}
@@ -0,0 +1,119 @@
+package com.back.simpleDb;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class RecordRowMapper<T> {
+
+    private static final Map<Class<?>, RecordRowMapper<?>> CACHE = new ConcurrentHashMap<>();
+
+    private final Class<T> recordClass;
+    private final String[] componentNames;
+    private final Class<?>[] componentTypes;
+    private final MethodHandle constructor;
+
+    private RecordRowMapper(Class<T> recordClass) {
+        RecordComponent[] components = recordClass.getRecordComponents();
+
+        this.recordClass = recordClass;
+        this.componentNames = new String[components.length];
+        this.componentTypes = new Class<?>[components.length];
+
+        for (int i = 0; i < components.length; i++) {
+            componentNames[i] = components[i].getName();
+            componentTypes[i] = components[i].getType();
+        }
+
+        try {
+            Constructor<T> canonical = recordClass.getDeclaredConstructor(componentTypes);
+            canonical.setAccessible(true);
+
+            this.constructor = MethodHandles.lookup()
+                                            .unreflectConstructor(canonical)
+                                            .asType(MethodType.genericMethodType(components.length))
+                                            .asSpreader(Object[].class, components.length);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> RecordRowMapper<T> of(Class<T> recordClass) {
+        return (RecordRowMapper<T>) CACHE.computeIfAbsent(recordClass, RecordRowMapper::new);
+    }
+
+    /**
+     * 결과셋의 컬럼 순서를 레코드 컴포넌트 순서에 맞춘 인덱스 배열을 만든다.
+     * 조회되지 않은 컴포넌트는 0 으로 표시되어 기본값으로 채워진다.
+     */
+    int[] columnIndexes(ResultSetMetaData metaData) throws SQLException {
+        int[] indexes = new int[componentNames.length];
+        int columnCount = metaData.getColumnCount();
+
+        for (int column = 1; column <= columnCount; column++) {
+            String label = metaData.getColumnLabel(column);
+
+            for (int i = 0; i < componentNames.length; i++) {
+                if (indexes[i] == 0 && componentNames[i].equalsIgnoreCase(label)) {
+                    indexes[i] = column;
+                    break;
+                }
+            }
+        }
+
+        return indexes;
+    }
+
+    T map(ResultSet rs, int[] columnIndexes) throws SQLException {
+        Object[] args = new Object[componentTypes.length];
+
+        for (int i = 0; i < componentTypes.length; i++) {
+            args[i] = columnIndexes[i] == 0
+                    ? defaultValue(componentTypes[i])
+                    : read(rs, columnIndexes[i], componentTypes[i]);
+        }
+
+        try {
+            return recordClass.cast(constructor.invoke(args));
+        } catch (Throwable e) {
+            throw new RuntimeException("레코드 생성 실패: " + recordClass.getName() + Arrays.toString(args), e);
+        }
+    }
+
+    private Object read(ResultSet rs, int column, Class<?> type) throws SQLException {
+        if (type == LocalDateTime.class) {
+            Timestamp timestamp = rs.getTimestamp(column);
+            return timestamp == null ? null : timestamp.toLocalDateTime();
+        }
+
+        Object value = rs.getObject(column, box(type));
+        return value == null && type.isPrimitive() ? defaultValue(type) : value;
+    }
+
+    private static Class<?> box(Class<?> type) {
+        return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0d;
+        if (type == float.class) return 0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        return 0;
+    }
+}
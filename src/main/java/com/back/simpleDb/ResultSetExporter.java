@@ -0,0 +1,148 @@
+package com.back.simpleDb;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResultSet 을 읽는 스레드(호출 스레드)와 파일로 인코딩하는 스레드를 나누어 내보낸다.
+ * 두 스레드 사이의 큐 크기가 제한되어 있어 결과 크기와 상관없이 메모리 사용량이 일정하다.
+ */
+class ResultSetExporter {
+
+    private static final int BATCH_SIZE = 1_024;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    private static final RowBatch END = new RowBatch(new Object[0][], 0);
+
+    private final ExportFormat format;
+    private final Path path;
+
+    ResultSetExporter(ExportFormat format, Path path) {
+        this.format = format;
+        this.path = path;
+    }
+
+    long export(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+
+        String[] columnNames = new String[columnCount];
+        int[] sqlTypes = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = metaData.getColumnLabel(i + 1);
+            sqlTypes[i] = metaData.getColumnType(i + 1);
+        }
+
+        BlockingQueue<RowBatch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        CompletableFuture<Void> encoding = new CompletableFuture<>();
+
+        Thread encoder = new Thread(() -> encode(queue, columnNames, sqlTypes, encoding), "simpleDb-export");
+        encoder.setDaemon(true);
+        encoder.start();
+
+        long rowCount = 0;
+        try {
+            Object[][] rows = new Object[BATCH_SIZE][];
+            int size = 0;
+
+            while (rs.next()) {
+                Object[] row = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = readValue(rs, i + 1);
+                }
+
+                rows[size++] = row;
+                rowCount++;
+
+                if (size == BATCH_SIZE) {
+                    put(queue, new RowBatch(rows, size), encoding);
+                    rows = new Object[BATCH_SIZE][];
+                    size = 0;
+                }
+            }
+
+            if (size > 0) {
+                put(queue, new RowBatch(rows, size), encoding);
+            }
+            put(queue, END, encoding);
+
+            encoding.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            encoder.interrupt();
+        }
+
+        return rowCount;
+    }
+
+    /**
+     * 인코딩 스레드가 실패하면 더 이상 큐를 비우지 않으므로, 기다리는 동안 실패 여부를 확인한다.
+     */
+    private void put(BlockingQueue<RowBatch> queue, RowBatch batch, CompletableFuture<Void> encoding)
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (encoding.isDone()) {
+                encoding.get();
+            }
+        }
+    }
+
+    private void encode(BlockingQueue<RowBatch> queue, String[] columnNames, int[] sqlTypes, CompletableFuture<Void> encoding) {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            RowBatchEncoder encoder = newEncoder(new ChannelWriter(channel, WRITE_BUFFER_SIZE));
+            encoder.writeHeader(columnNames, sqlTypes);
+
+            for (RowBatch batch = queue.take(); batch != END; batch = queue.take()) {
+                encoder.writeBatch(batch.rows(), batch.size());
+            }
+
+            encoder.finish();
+            encoding.complete(null);
+        } catch (IOException | RuntimeException e) {
+            encoding.completeExceptionally(e);
+        } catch (InterruptedException e) {
+            encoding.completeExceptionally(e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private RowBatchEncoder newEncoder(ChannelWriter writer) {
+        return switch (format) {
+            case CSV -> new CsvRowBatchEncoder(writer);
+            case COLUMNAR -> new ColumnarRowBatchEncoder(writer);
+        };
+    }
+
+    private static Object readValue(ResultSet rs, int column) throws SQLException {
+        Object value = Sql.getValue(rs, column);
+
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate().atStartOfDay();
+        }
+        if (value instanceof LocalDate date) {
+            return date.atStartOfDay();
+        }
+
+        return value;
+    }
+
+    private record RowBatch(Object[][] rows, int size) {
+    }
+}
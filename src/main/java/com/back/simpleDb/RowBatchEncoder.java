@@ -0,0 +1,12 @@
+package com.back.simpleDb;
+
+import java.io.IOException;
+
+interface RowBatchEncoder {
+
+    void writeHeader(String[] columnNames, int[] sqlTypes) throws IOException;
+
+    void writeBatch(Object[][] rows, int rowCount) throws IOException;
+
+    void finish() throws IOException;
+}
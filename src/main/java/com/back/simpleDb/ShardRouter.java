@@ -0,0 +1,13 @@
+package com.back.simpleDb;
+
+@FunctionalInterface
+public interface ShardRouter {
+
+    int route(Object shardKey, int shardCount);
+
+    static ShardRouter modulo() {
+        return (shardKey, shardCount) -> shardKey instanceof Number number
+                ? (int) Math.floorMod(number.longValue(), (long) shardCount)
+                : Math.floorMod(shardKey.hashCode(), shardCount);
+    }
+}
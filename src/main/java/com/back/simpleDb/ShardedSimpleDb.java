@@ -0,0 +1,182 @@
+package com.back.simpleDb;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 여러 SimpleDb 샤드를 하나처럼 다룬다.
+ * 샤드 키가 있는 조회는 해당 샤드로 바로 보내고, 전체 샤드 조회는 제한된 스레드 풀에서 병렬로 실행한 뒤
+ * 정렬된 결과를 k-way merge 하고 마지막에 limit 을 적용한다.
+ */
+public class ShardedSimpleDb implements AutoCloseable {
+
+    private final List<SimpleDb> shards;
+    private final ShardRouter router;
+    private final ExecutorService executor;
+
+    public ShardedSimpleDb(List<SimpleDb> shards, ShardRouter router) {
+        this(shards, router, shards.size());
+    }
+
+    public ShardedSimpleDb(List<SimpleDb> shards, ShardRouter router, int parallelism) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("샤드가 하나 이상 있어야 합니다.");
+        }
+
+        this.shards = List.copyOf(shards);
+        this.router = router;
+        this.executor = newExecutor(parallelism);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public SimpleDb shard(Object shardKey) {
+        return shards.get(router.route(shardKey, shards.size()));
+    }
+
+    public Sql genSql(Object shardKey) {
+        return shard(shardKey).genSql();
+    }
+
+    public List<Map<String, Object>> selectRows(String sql, Object... params) {
+        return scatterGather(shard -> shard.genSql().append(sql, params).selectRows(), null, -1);
+    }
+
+    /**
+     * 각 샤드의 결과가 order 순서로 정렬되어 있어야 한다. (샤드 SQL 에 같은 ORDER BY 를 둔다)
+     */
+    public List<Map<String, Object>> selectSortedRows(String sql, Comparator<Map<String, Object>> order, int limit, Object... params) {
+        return scatterGather(shard -> shard.genSql().append(sql, params).selectRows(), order, limit);
+    }
+
+    /**
+     * 각 샤드의 결과가 order 순서로 정렬되어 있어야 한다. (ORDER BY id DESC 면 Comparator.reverseOrder())
+     */
+    public List<Long> selectLongs(String sql, Comparator<Long> order, int limit, Object... params) {
+        return scatterGather(shard -> shard.genSql().append(sql, params).selectLongs(), order, limit);
+    }
+
+    /**
+     * 모든 샤드에 query 를 병렬로 실행한다.
+     * order 가 null 이면 샤드 순서대로 이어 붙이고, 아니면 k-way merge 한다. limit 이 음수면 제한하지 않는다.
+     */
+    public <T> List<T> scatterGather(Function<SimpleDb, List<T>> query, Comparator<? super T> order, int limit) {
+        List<Future<List<T>>> futures = new ArrayList<>(shards.size());
+        for (SimpleDb shard : shards) {
+            futures.add(executor.submit(() -> query.apply(shard)));
+        }
+
+        List<List<T>> results = new ArrayList<>(shards.size());
+        try {
+            for (Future<List<T>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new RuntimeException(e.getCause());
+        }
+
+        return order == null ? concat(results, limit) : merge(results, order, limit);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private <T> List<T> concat(List<List<T>> results, int limit) {
+        List<T> merged = new ArrayList<>();
+
+        for (List<T> result : results) {
+            for (T value : result) {
+                if (limit >= 0 && merged.size() >= limit) {
+                    return merged;
+                }
+                merged.add(value);
+            }
+        }
+
+        return merged;
+    }
+
+    private <T> List<T> merge(List<List<T>> results, Comparator<? super T> order, int limit) {
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(results.size(), (a, b) -> order.compare(a.head, b.head));
+        for (List<T> result : results) {
+            Iterator<T> iterator = result.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Cursor<>(iterator.next(), iterator));
+            }
+        }
+
+        List<T> merged = new ArrayList<>();
+        while (!heads.isEmpty() && (limit < 0 || merged.size() < limit)) {
+            Cursor<T> cursor = heads.poll();
+            merged.add(cursor.head);
+
+            if (cursor.iterator.hasNext()) {
+                cursor.head = cursor.iterator.next();
+                heads.add(cursor);
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * 작업 스레드가 샤드별로 커넥션을 계속 재사용하고, 스레드가 끝날 때 그 커넥션을 닫는다.
+     */
+    private ExecutorService newExecutor(int parallelism) {
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                parallelism, parallelism,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(parallelism * 4),
+                runnable -> {
+                    Thread thread = new Thread(() -> {
+                        try {
+                            runnable.run();
+                        } finally {
+                            shards.forEach(SimpleDb::close);
+                        }
+                    }, "simpleDb-shard-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        pool.allowCoreThreadTimeOut(true);
+
+        return pool;
+    }
+
+    private static class Cursor<T> {
+        private T head;
+        private final Iterator<T> iterator;
+
+        private Cursor(T head, Iterator<T> iterator) {
+            this.head = head;
+            this.iterator = iterator;
+        }
+    }
+}
@@ -1,31 +1,196 @@
 package com.back.simpleDb;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public class SimpleDb {
 
-    private static final ThreadLocal<Connection> CONNECTION_THREAD_LOCAL = new ThreadLocal<>();
+    private final ThreadLocal<ConnectionHolder> connectionThreadLocal = new ThreadLocal<>();
+    private final ThreadLocal<EntityTracker> entityTrackerThreadLocal = new ThreadLocal<>();
     private boolean devMode;
     private final String host, user, password, database;
+    private final String url;
+    private final DataSource dataSource;
+
+    private long validationIdleMillis = 30_000;
+    private int validationTimeoutSeconds = 1;
+    private int connectTimeoutMillis = 3_000;
+    private CircuitBreaker circuitBreaker = new CircuitBreaker(5, 10_000);
+    private boolean localInfileEnabled;
+    private boolean multiStatementsEnabled;
+    private volatile QueryPlanAnalyzer queryPlanAnalyzer;
+    private final ChangeEventPublisher changeEventPublisher = new ChangeEventPublisher();
+    private ChangeEventSource changeEventSource;
+    private final MaterializedAggregates aggregates = new MaterializedAggregates(this);
 
     public SimpleDb(String host, String user, String password, String database) {
         this.host = host;
         this.user = user;
         this.password = password;
         this.database = database;
+        this.url = null;
+        this.dataSource = null;
+    }
+
+    /**
+     * MySQL 외의 엔진(예: MySQL 모드의 H2)을 쓸 때 JDBC URL 을 그대로 받는다.
+     * URL 을 직접 지정하면 connectTimeout 등 MySQL 전용 옵션은 덧붙이지 않는다.
+     */
+    public SimpleDb(String url, String user, String password) {
+        this.host = null;
+        this.user = user;
+        this.password = password;
+        this.database = null;
+        this.url = url;
+        this.dataSource = null;
+    }
+
+    public SimpleDb(DataSource dataSource) {
+        this.host = null;
+        this.user = null;
+        this.password = null;
+        this.database = null;
+        this.url = null;
+        this.dataSource = dataSource;
     }
 
     public void setDevMode(boolean mode) {
         this.devMode = mode;
     }
 
+    public void setValidationIdleMillis(long validationIdleMillis) {
+        this.validationIdleMillis = validationIdleMillis;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public void setCircuitBreaker(int failureThreshold, long openMillis) {
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openMillis);
+    }
+
+    /**
+     * host 로 만든 SimpleDb 는 URL 에 allowLoadLocalInfile 을 붙인다.
+     * URL 이나 DataSource 로 만든 경우 그 설정에 옵션이 있어야 하며, 없으면 INSERT 로 적재한다.
+     */
+    public void setLocalInfileEnabled(boolean localInfileEnabled) {
+        this.localInfileEnabled = localInfileEnabled;
+    }
+
+    /**
+     * host 로 만든 SimpleDb 는 URL 에 allowMultiQueries 를 붙인다.
+     * URL 이나 DataSource 로 만든 경우 그 설정에 옵션이 있어야 하며, 없으면 순서대로 실행한다.
+     */
+    public void setMultiStatementsEnabled(boolean multiStatementsEnabled) {
+        this.multiStatementsEnabled = multiStatementsEnabled;
+    }
+
+    /**
+     * 조회의 samplingRate 비율만 SQL 모양별 EXPLAIN 대상으로 삼는다. (예: 0.01)
+     */
+    public QueryPlanAnalyzer enableQueryPlanAnalyzer(double samplingRate) {
+        QueryPlanAnalyzer analyzer = new QueryPlanAnalyzer(this, samplingRate);
+
+        QueryPlanAnalyzer previous = this.queryPlanAnalyzer;
+        this.queryPlanAnalyzer = analyzer;
+        if (previous != null) {
+            previous.close();
+        }
+
+        return analyzer;
+    }
+
+    public void disableQueryPlanAnalyzer() {
+        QueryPlanAnalyzer previous = this.queryPlanAnalyzer;
+        this.queryPlanAnalyzer = null;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    public QueryPlanAnalyzer getQueryPlanAnalyzer() {
+        return queryPlanAnalyzer;
+    }
+
+    MaterializedAggregates getAggregates() {
+        return aggregates;
+    }
+
+    public void addChangeListener(String table, ChangeListener listener) {
+        changeEventPublisher.addListener(table, listener);
+    }
+
+    public void removeChangeListener(String table, ChangeListener listener) {
+        changeEventPublisher.removeListener(table, listener);
+    }
+
+    /**
+     * source 가 주는 행 변경 이벤트를 테이블별 리스너에게 전달하기 시작한다.
+     * 이전에 시작한 source 가 있으면 닫는다.
+     */
+    public synchronized void startChangeCapture(ChangeEventSource source) {
+        stopChangeCapture();
+
+        source.start(changeEventPublisher::publish);
+        this.changeEventSource = source;
+    }
+
+    public synchronized void stopChangeCapture() {
+        if (changeEventSource != null) {
+            changeEventSource.close();
+            changeEventSource = null;
+        }
+    }
+
+    /**
+     * SELECT COUNT(*) FROM table WHERE (filters 의 동등 조건) 을 한 번 계산하고, 이후 Sql 로 실행된 쓰기만큼 갱신한다.
+     */
+    public MaterializedAggregate declareCount(String table, Map<String, Object> filters) {
+        return aggregates.declare(MaterializedAggregate.Function.COUNT, table, null, filters);
+    }
+
+    public MaterializedAggregate declareSum(String table, String column, Map<String, Object> filters) {
+        return aggregates.declare(MaterializedAggregate.Function.SUM, table, column, filters);
+    }
+
+    public void removeAggregate(MaterializedAggregate aggregate) {
+        aggregates.remove(aggregate);
+    }
+
+    /**
+     * Sql 을 거치지 않은 쓰기나 동시 쓰기로 어긋난 집계를 데이터베이스 값으로 다시 맞춘다.
+     */
+    public void reconcileAggregates() {
+        aggregates.reconcileAll();
+    }
+
+    public void startAggregateReconciliation(long intervalMillis) {
+        aggregates.startReconciliation(intervalMillis);
+    }
+
+    public void stopAggregateReconciliation() {
+        aggregates.stopReconciliation();
+    }
+
     public void run(String sql) {
         Connection connection = getConnection();
         try (PreparedStatement pstm = connection.prepareStatement(sql)) {
             pstm.execute();
+            aggregates.invalidate(sql, !isInTransaction(connectionThreadLocal.get()));
 
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -41,30 +206,220 @@ public class SimpleDb {
             }
 
             pstm.execute();
+            aggregates.invalidate(sql, !isInTransaction(connectionThreadLocal.get()));
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
     public Sql genSql() {
-        return new Sql(getConnection(), devMode);
+        return new Sql(getConnection(), devMode, this::reconnectForRead, queryPlanAnalyzer, entityTrackerThreadLocal.get(),
+                aggregates);
+    }
+
+    public SqlPipeline genPipeline() {
+        return new SqlPipeline(getConnection(), devMode, multiStatementsEnabled, aggregates);
+    }
+
+    /**
+     * 행을 LOAD DATA LOCAL INFILE 로 스트리밍 적재하고, 적재된 행 수를 돌려준다.
+     * LOAD DATA 를 쓸 수 없으면 multi-row INSERT 로 나누어 적재한다.
+     */
+    public long bulkLoad(String table, List<String> columns, Stream<Object[]> rows) {
+        Connection connection = getConnection();
+        long loadedRowsCount = new BulkLoader(connection, localInfileEnabled).load(table, columns, rows);
+        aggregates.invalidateTable(table, !isInTransaction(connectionThreadLocal.get()));
+
+        return loadedRowsCount;
+    }
+
+    public <T> long bulkLoad(String table, Stream<T> entities, String... columns) {
+        List<String> columnNames = List.of(columns);
+
+        return bulkLoad(table, columnNames, entities.map(entity -> {
+            EntityMetadata<?> metadata = EntityMetadata.of(entity.getClass());
+            Object[] row = new Object[columnNames.size()];
+
+            for (int i = 0; i < row.length; i++) {
+                row[i] = metadata.read(entity, columnNames.get(i));
+            }
+
+            return row;
+        }));
+    }
+
+    /**
+     * 엔티티의 id 를 기준으로 모든 컬럼을 UPDATE 하고, 수정된 행 수를 돌려준다.
+     * version 필드가 있으면 WHERE 에 version 을 걸고 1 증가시키며, 그 사이 다른 곳에서 수정되었다면
+     * OptimisticLockException 을 던진다.
+     */
+    public int update(Object entity) {
+        EntityMetadata<?> metadata = EntityMetadata.of(entity.getClass());
+        List<String> columns = metadata.getUpdatableColumnNames();
+        Object id = metadata.read(entity, EntityMetadata.ID_COLUMN);
+
+        List<Object> params = new ArrayList<>();
+        StringBuilder setClause = new StringBuilder();
+        for (String column : columns) {
+            setClause.append(setClause.isEmpty() ? "" : ", ").append(column).append(" = ?");
+            params.add(metadata.read(entity, column));
+        }
+
+        if (!metadata.isVersioned()) {
+            params.add(id);
+            int affectedRowsCount = genSql().append("UPDATE " + metadata.getTableName())
+                                            .append("SET " + setClause, params.toArray())
+                                            .append("WHERE id = ?")
+                                            .update();
+
+            refreshTracking(entity);
+
+            return affectedRowsCount;
+        }
+
+        long version = ((Number) metadata.read(entity, EntityMetadata.VERSION_COLUMN)).longValue();
+        params.add(id);
+        params.add(version);
+
+        int affectedRowsCount = genSql().append("UPDATE " + metadata.getTableName())
+                                        .append("SET " + setClause + (setClause.isEmpty() ? "" : ", ") + "version = version + 1", params.toArray())
+                                        .append("WHERE id = ? AND version = ?")
+                                        .update();
+
+        if (affectedRowsCount == 0) {
+            throw new OptimisticLockException(entity.getClass(), id, version);
+        }
+
+        if (!entity.getClass().isRecord()) {
+            metadata.write(entity, EntityMetadata.VERSION_COLUMN, version + 1);
+        }
+
+        refreshTracking(entity);
+
+        return affectedRowsCount;
+    }
+
+    /**
+     * 현재 스레드에서 selectRow(Class), selectRows(Class) 로 조회한 엔티티의 스냅샷을 보관하기 시작한다.
+     */
+    public void startTracking() {
+        if (entityTrackerThreadLocal.get() == null) {
+            entityTrackerThreadLocal.set(new EntityTracker());
+        }
+    }
+
+    public void endTracking() {
+        EntityTracker tracker = entityTrackerThreadLocal.get();
+        if (tracker != null) {
+            tracker.clear();
+            entityTrackerThreadLocal.remove();
+        }
+    }
+
+    /**
+     * 추적 중인 엔티티를 다음 flush 때 저장하도록 표시한다.
+     */
+    public void save(Object entity) {
+        EntityTracker tracker = entityTrackerThreadLocal.get();
+        if (tracker == null) {
+            throw new IllegalStateException("startTracking() 이후에만 save 할 수 있습니다.");
+        }
+
+        tracker.save(entity);
+    }
+
+    /**
+     * save 된 엔티티 중 스냅샷과 달라진 컬럼만 UPDATE 하고, 수정된 행 수를 돌려준다.
+     * 중간에 충돌이 나면 앞선 UPDATE 는 이미 반영되었으므로 트랜잭션 안에서 호출하는 것이 좋다.
+     */
+    public int flush() {
+        EntityTracker tracker = entityTrackerThreadLocal.get();
+        if (tracker == null) {
+            return 0;
+        }
+
+        return tracker.flush(new MyJdbcTemplate(getConnection(), devMode), aggregates);
+    }
+
+    private void refreshTracking(Object entity) {
+        EntityTracker tracker = entityTrackerThreadLocal.get();
+        if (tracker != null && tracker.isTracked(entity)) {
+            tracker.track(entity);
+        }
+    }
+
+    /**
+     * OptimisticLockException 이 나면 잠시 쉬었다가 action 을 다시 실행한다.
+     * action 은 매번 최신 행을 다시 읽어 수정해야 한다.
+     */
+    public <T> T retryOnConflict(int maxAttempts, Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(attempt * 10L + 1));
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 현재 스레드의 커넥션에 묶인 Sql 하나를 비워서 다시 쓴다. genSql() 과 달리 매번 새로 만들지 않는다.
+     * 다음 reusableSql() 호출 전까지만 유효하므로 변수에 담아 두고 다시 쓰면 안 된다.
+     */
+    public Sql reusableSql() {
+        getConnection();
+        ConnectionHolder holder = connectionThreadLocal.get();
+
+        QueryPlanAnalyzer analyzer = queryPlanAnalyzer;
+        EntityTracker tracker = entityTrackerThreadLocal.get();
+
+        if (holder.reusableSql == null || holder.reusableSqlAnalyzer != analyzer || holder.reusableSqlTracker != tracker) {
+            holder.reusableSql = new Sql(holder.connection, devMode, this::reconnectForRead, analyzer, tracker, aggregates);
+            holder.reusableSqlAnalyzer = analyzer;
+            holder.reusableSqlTracker = tracker;
+        }
+
+        return holder.reusableSql.reset();
+    }
+
+    /**
+     * SQL 문자열과 고정 크기 파라미터 배열을 미리 만들어 두고 실행마다 값만 바꿔 끼운다.
+     */
+    public PreparedQuery prepareQuery(String sql) {
+        return new PreparedQuery(this, sql);
     }
 
     public void close() {
+        ConnectionHolder holder = connectionThreadLocal.get();
+        if (holder == null) {
+            return;
+        }
+
         try {
-            Connection connection = getConnection();
+            Connection connection = holder.connection;
             connection.setAutoCommit(true);
             connection.close();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         } finally {
-            CONNECTION_THREAD_LOCAL.remove();
+            connectionThreadLocal.remove();
+            aggregates.discardPending();
         }
     }
 
     public void startTransaction() {
         try {
             getConnection().setAutoCommit(false);
+            connectionThreadLocal.get().transactionStarted = true;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -72,7 +427,7 @@ public class SimpleDb {
 
     public void commit() {
         try {
-            getConnection().commit();
+            aggregates.commit(getConnection());
         } catch (SQLException e) {
             rollback();
             throw new RuntimeException(e);
@@ -86,29 +441,140 @@ public class SimpleDb {
         } catch (SQLException e) {
             throw new RuntimeException(e);
         } finally {
+            aggregates.discardPending();
             try {
                 connection.setAutoCommit(true);
+                connectionThreadLocal.get().transactionStarted = false;
             } catch (SQLException ignored) {
             }
         }
     }
 
-    private Connection getConnection() {
-        Connection connection = CONNECTION_THREAD_LOCAL.get();
+    Connection getConnection() {
+        ConnectionHolder holder = connectionThreadLocal.get();
 
-        if (connection == null) {
-            try {
-                connection = DriverManager.getConnection(
-                        String.format("jdbc:mysql://%s:3306/%s", host, database),
-                        user,
-                        password
-                );
-                CONNECTION_THREAD_LOCAL.set(connection);
-            } catch (SQLException e) {
-                throw new RuntimeException(e);
+        if (holder != null) {
+            if (isAlive(holder)) {
+                holder.lastUsedAt = System.nanoTime();
+                return holder.connection;
+            }
+
+            boolean inTransaction = isInTransaction(holder);
+            discard(holder);
+
+            if (inTransaction) {
+                throw new RuntimeException("트랜잭션 진행 중 커넥션이 끊어졌습니다.");
             }
         }
 
-        return connection;
+        holder = new ConnectionHolder(openConnection());
+        connectionThreadLocal.set(holder);
+
+        return holder.connection;
+    }
+
+    /**
+     * 트랜잭션 밖의 조회가 끊어진 커넥션 때문에 실패했을 때 새 커넥션을 돌려준다.
+     * 트랜잭션 중이라면 재시도하면 안 되므로 null 을 돌려준다.
+     */
+    private Connection reconnectForRead() {
+        ConnectionHolder holder = connectionThreadLocal.get();
+
+        if (holder != null) {
+            if (isInTransaction(holder)) {
+                return null;
+            }
+
+            discard(holder);
+        }
+
+        return getConnection();
+    }
+
+    private boolean isAlive(ConnectionHolder holder) {
+        if (System.nanoTime() - holder.lastUsedAt < validationIdleMillis * 1_000_000L) {
+            return true;
+        }
+
+        try {
+            return holder.connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 닫힌 커넥션은 autoCommit 을 물을 수 없으므로 startTransaction 으로 기록해 둔 상태를 따른다.
+     */
+    private boolean isInTransaction(ConnectionHolder holder) {
+        try {
+            return !holder.connection.getAutoCommit();
+        } catch (SQLException e) {
+            return holder.transactionStarted;
+        }
+    }
+
+
+    private void discard(ConnectionHolder holder) {
+        connectionThreadLocal.remove();
+
+        try {
+            holder.connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private Connection openConnection() {
+        circuitBreaker.acquirePermission();
+
+        try {
+            Connection connection = dataSource != null
+                    ? dataSource.getConnection()
+                    : DriverManager.getConnection(jdbcUrl(), user, password);
+            circuitBreaker.recordSuccess();
+
+            return connection;
+        } catch (SQLException e) {
+            circuitBreaker.recordFailure();
+            throw new RuntimeException(e);
+        } catch (RuntimeException | Error e) {
+            circuitBreaker.recordFailure();
+            throw e;
+        }
+    }
+
+    private String jdbcUrl() {
+        if (url != null) {
+            return url;
+        }
+
+        StringBuilder builder = new StringBuilder(
+                String.format("jdbc:mysql://%s:3306/%s?connectTimeout=%d", host, database, connectTimeoutMillis));
+
+        if (localInfileEnabled) {
+            builder.append("&allowLoadLocalInfile=true");
+        }
+        if (multiStatementsEnabled) {
+            builder.append("&allowMultiQueries=true");
+        }
+
+        return builder.toString();
+    }
+
+    boolean isDevMode() {
+        return devMode;
+    }
+
+    private static class ConnectionHolder {
+        private final Connection connection;
+        private long lastUsedAt = System.nanoTime();
+        private boolean transactionStarted;
+        private Sql reusableSql;
+        private QueryPlanAnalyzer reusableSqlAnalyzer;
+        private EntityTracker reusableSqlTracker;
+
+        private ConnectionHolder(Connection connection) {
+            this.connection = connection;
+        }
     }
 }
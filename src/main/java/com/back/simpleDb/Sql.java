@@ -1,23 +1,104 @@
 package com.back.simpleDb;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Field;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.sql.Blob;
+import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 public class Sql {
 
+    static final ResultSetExtractor<List<Map<String, Object>>> ROWS_EXTRACTOR = rs -> {
+        List<Map<String, Object>> result = new ArrayList<>();
+
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+
+        while (rs.next()) {
+            Map<String, Object> map = new HashMap<>();
+            for (int i = 1; i <= columnCount; i++) {
+                String columnName = metaData.getColumnName(i);
+                map.put(columnName, getValue(rs, i));
+            }
+
+            result.add(map);
+        }
+
+        return result;
+    };
+
+    static final ResultSetExtractor<Map<String, Object>> ROW_EXTRACTOR = rs -> {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+
+        Map<String, Object> map = new HashMap<>();
+
+        if (rs.next()) {
+            for (int i = 1; i <= columnCount; i++) {
+                String columnName = metaData.getColumnName(i);
+                map.put(columnName, getValue(rs, i));
+            }
+        }
+
+        return map;
+    };
+
+    static final ResultSetExtractor<Long> LONG_EXTRACTOR = rs -> rs.next() ? rs.getLong(1) : -1L;
+
+    static final ResultSetExtractor<String> STRING_EXTRACTOR = rs -> rs.next() ? rs.getString(1) : null;
+
+    static final ResultSetExtractor<List<Long>> LONGS_EXTRACTOR = rs -> {
+        List<Long> result = new ArrayList<>();
+        while (rs.next()) {
+            result.add(rs.getLong(1));
+        }
+
+        return result;
+    };
+
     private final MyJdbcTemplate jdbcTemplate;
     private final SqlBuilder sqlBuilder;
+    private final EntityTracker entityTracker;
+    private final MaterializedAggregates aggregates;
 
     public Sql(Connection connection, boolean devMode) {
         this.sqlBuilder = new SqlBuilder();
         this.jdbcTemplate = new MyJdbcTemplate(connection, devMode);
+        this.entityTracker = null;
+        this.aggregates = null;
+    }
+
+    Sql(Connection connection, boolean devMode, Supplier<Connection> reconnector, QueryPlanAnalyzer queryPlanAnalyzer,
+        EntityTracker entityTracker, MaterializedAggregates aggregates) {
+        this.sqlBuilder = new SqlBuilder();
+        this.jdbcTemplate = new MyJdbcTemplate(connection, devMode, reconnector, queryPlanAnalyzer);
+        this.entityTracker = entityTracker;
+        this.aggregates = aggregates;
+    }
+
+    /**
+     * 쌓인 SQL 과 파라미터를 비운다. 내부 버퍼는 그대로 다시 쓴다.
+     */
+    public Sql reset() {
+        sqlBuilder.clear();
+        return this;
     }
 
     public Sql append(String sql) {
@@ -36,61 +117,49 @@ public class Sql {
     }
 
     public long insert() {
+        if (aggregates != null) {
+            return aggregates.executeInsert(jdbcTemplate, getSql(), getParameters());
+        }
+
         return jdbcTemplate.executeInsert(getSql(), getParameters());
     }
 
     public int update() {
-        return jdbcTemplate.executeUpdate(getSql(), getParameters());
+        return executeUpdate();
     }
 
     public int delete() {
-        return jdbcTemplate.executeUpdate(getSql(), getParameters());
+        return executeUpdate();
     }
 
-    public List<Map<String, Object>> selectRows() {
-        return jdbcTemplate.query(getSql(), getParameters(), rs -> {
-            List<Map<String, Object>> result = new ArrayList<>();
-
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
-
-            while (rs.next()) {
-                Map<String, Object> map = new HashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = metaData.getColumnName(i);
-                    map.put(columnName, rs.getObject(i));
-                }
+    private int executeUpdate() {
+        if (aggregates != null) {
+            return aggregates.executeUpdate(jdbcTemplate, getSql(), getParameters());
+        }
 
-                result.add(map);
-            }
+        return jdbcTemplate.executeUpdate(getSql(), getParameters());
+    }
 
-            return result;
-        });
+    public List<Map<String, Object>> selectRows() {
+        return jdbcTemplate.query(getSql(), getParameters(), ROWS_EXTRACTOR);
     }
 
     public Map<String, Object> selectRow() {
-        return jdbcTemplate.query(getSql(), getParameters(), rs -> {
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
-
-            Map<String, Object> map = new HashMap<>();
-
-            if (rs.next()) {
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = metaData.getColumnName(i);
-                    map.put(columnName, rs.getObject(i));
-                }
-            }
-
-            return map;
-        });
+        return jdbcTemplate.query(getSql(), getParameters(), ROW_EXTRACTOR);
     }
 
     public <T> T selectRow(Class<T> cls) {
+        if (cls.isRecord()) {
+            return jdbcTemplate.query(getSql(), getParameters(), rs -> {
+                RecordRowMapper<T> mapper = RecordRowMapper.of(cls);
+                return rs.next() ? mapper.map(rs, mapper.columnIndexes(rs.getMetaData())) : null;
+            });
+        }
+
         return jdbcTemplate.query(getSql(), getParameters(), rs -> {
             try {
                 if (rs.next()) {
-                    return getInstance(cls, rs);
+                    return track(getInstance(cls, rs), hasVersionColumn(rs));
                 }
             } catch (Exception ignore) {
             }
@@ -100,11 +169,26 @@ public class Sql {
     }
 
     public <T> List<T> selectRows(Class<T> cls) {
+        if (cls.isRecord()) {
+            return jdbcTemplate.query(getSql(), getParameters(), rs -> {
+                RecordRowMapper<T> mapper = RecordRowMapper.of(cls);
+                int[] columnIndexes = mapper.columnIndexes(rs.getMetaData());
+
+                List<T> result = new ArrayList<>();
+                while (rs.next()) {
+                    result.add(mapper.map(rs, columnIndexes));
+                }
+
+                return result;
+            });
+        }
+
         return jdbcTemplate.query(getSql(), getParameters(), rs -> {
             try {
+                boolean versionLoaded = hasVersionColumn(rs);
                 List<T> result = new ArrayList<>();
                 while (rs.next()) {
-                    result.add(getInstance(cls, rs));
+                    result.add(track(getInstance(cls, rs), versionLoaded));
                 }
 
                 return result;
@@ -116,7 +200,7 @@ public class Sql {
     }
 
     public long selectLong() {
-        return jdbcTemplate.query(getSql(), getParameters(), rs -> rs.next() ? rs.getLong(1) : -1L);
+        return jdbcTemplate.query(getSql(), getParameters(), LONG_EXTRACTOR);
     }
 
     public LocalDateTime selectDatetime() {
@@ -124,7 +208,7 @@ public class Sql {
     }
 
     public String selectString() {
-        return jdbcTemplate.query(getSql(), getParameters(), rs -> rs.next() ? rs.getString(1) : null);
+        return jdbcTemplate.query(getSql(), getParameters(), STRING_EXTRACTOR);
     }
 
     public Boolean selectBoolean() {
@@ -132,17 +216,81 @@ public class Sql {
     }
 
     public List<Long> selectLongs() {
-        return jdbcTemplate.query(getSql(), getParameters(), rs -> {
-            List<Long> result = new ArrayList<>();
-            while (rs.next()) {
-                result.add(rs.getLong(1));
+        return jdbcTemplate.query(getSql(), getParameters(), LONGS_EXTRACTOR);
+    }
+
+    /**
+     * 첫 번째 행의 첫 번째 컬럼을 InputStream 으로 넘겨준다.
+     * 스트림은 콜백 안에서만 유효하며, 행이 없거나 값이 NULL 이면 null 이 전달된다.
+     * 결과셋도 스트리밍으로 읽으므로 드라이버가 행 전체를 힙에 미리 올리지 않는다.
+     */
+    public <R> R selectBinaryStream(StreamCallback<InputStream, R> callback) {
+        return jdbcTemplate.queryStreaming(getSql(), getParameters(), rs -> {
+            try (InputStream in = rs.next() ? rs.getBinaryStream(1) : null) {
+                return callback.doInStream(in);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
             }
+        });
+    }
 
-            return result;
+    public <R> R selectCharacterStream(StreamCallback<Reader, R> callback) {
+        return jdbcTemplate.queryStreaming(getSql(), getParameters(), rs -> {
+            try (Reader reader = rs.next() ? rs.getCharacterStream(1) : null) {
+                return callback.doInStream(reader);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
         });
     }
 
-    private <T> T getInstance(Class<T> cls, ResultSet rs) {
+    public long selectTo(OutputStream out) {
+        return selectBinaryStream(in -> in == null ? -1L : in.transferTo(out));
+    }
+
+    public long selectTo(Writer writer) {
+        return selectCharacterStream(reader -> reader == null ? -1L : reader.transferTo(writer));
+    }
+
+    public long selectTo(WritableByteChannel channel) {
+        return selectBinaryStream(in -> {
+            if (in == null) {
+                return -1L;
+            }
+
+            // 채널을 닫지 않도록 스트림은 닫지 않는다.
+            return in.transferTo(Channels.newOutputStream(channel));
+        });
+    }
+
+    /**
+     * 조회 결과를 행 단위로 가져오면서 파일로 내보내고, 내보낸 행 수를 돌려준다.
+     */
+    public long export(Path path, ExportFormat format) {
+        ResultSetExporter exporter = new ResultSetExporter(format, path);
+        return jdbcTemplate.queryStreaming(getSql(), getParameters(), exporter::export);
+    }
+
+    private <T> T track(T instance, boolean versionLoaded) {
+        if (entityTracker != null) {
+            entityTracker.track(instance, versionLoaded);
+        }
+
+        return instance;
+    }
+
+    private static boolean hasVersionColumn(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (EntityMetadata.VERSION_COLUMN.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static <T> T getInstance(Class<T> cls, ResultSet rs) {
         try {
             T instance = cls.getConstructor().newInstance();
 
@@ -154,7 +302,7 @@ public class Sql {
 
                 Field field = cls.getDeclaredField(columnName);
                 field.setAccessible(true);
-                field.set(instance, rs.getObject(i));
+                field.set(instance, getValue(rs, i));
             }
 
             return instance;
@@ -163,6 +311,33 @@ public class Sql {
         }
     }
 
+    /**
+     * 드라이버마다 다른 타입을 맞춘다. DATETIME 은 LocalDateTime 으로, H2 가 돌려주는 Clob/Blob 은 String/byte[] 로 바꾼다.
+     */
+    static Object getValue(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        if (value instanceof Clob clob) {
+            try {
+                return clob.getSubString(1, (int) clob.length());
+            } finally {
+                clob.free();
+            }
+        }
+        if (value instanceof Blob blob) {
+            try {
+                return blob.getBytes(1, (int) blob.length());
+            } finally {
+                blob.free();
+            }
+        }
+
+        return value;
+    }
+
     private String getSql() {
         return sqlBuilder.getSql();
     }
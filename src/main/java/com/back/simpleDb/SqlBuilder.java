@@ -1,6 +1,7 @@
 package com.back.simpleDb;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class SqlBuilder {
@@ -14,7 +15,7 @@ public class SqlBuilder {
 
     public void append(String sql, Object... params) {
         sqlBuilder.append(sql).append(" ");
-        parameters.addAll(List.of(params));
+        Collections.addAll(parameters, params);
     }
 
     public void appendIn(String sql, Object... params) {
@@ -22,6 +23,11 @@ public class SqlBuilder {
         append(sql.replaceFirst("\\?", replace), params);
     }
 
+    public void clear() {
+        sqlBuilder.setLength(0);
+        parameters.clear();
+    }
+
     public String getSql() {
         return sqlBuilder.toString().strip();
     }
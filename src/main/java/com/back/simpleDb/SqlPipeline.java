@@ -0,0 +1,199 @@
+package com.back.simpleDb;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 여러 SQL 을 모아 두었다가 한 번에 실행한다.
+ * multi statement 가 허용된 MySQL 커넥션이면 한 번의 왕복으로 보내고,
+ * 아니면 같은 커넥션에서 순서대로 실행하되 연속된 동일 UPDATE 는 JDBC 배치로 묶는다.
+ * 한 번에 보내거나 배치로 묶은 UPDATE 는 MaterializedAggregate 를 stale 로 표시한다.
+ */
+public class SqlPipeline {
+
+    private final Connection connection;
+    private final MyJdbcTemplate jdbcTemplate;
+    private final boolean multiStatementsEnabled;
+    private final MaterializedAggregates aggregates;
+    private final List<Entry<?>> entries = new ArrayList<>();
+
+    SqlPipeline(Connection connection, boolean devMode, boolean multiStatementsEnabled, MaterializedAggregates aggregates) {
+        this.connection = connection;
+        this.jdbcTemplate = new MyJdbcTemplate(connection, devMode);
+        this.multiStatementsEnabled = multiStatementsEnabled;
+        this.aggregates = aggregates;
+    }
+
+    public PipelineResult<List<Map<String, Object>>> selectRows(String sql, Object... params) {
+        return add(sql, params, Sql.ROWS_EXTRACTOR);
+    }
+
+    public PipelineResult<Map<String, Object>> selectRow(String sql, Object... params) {
+        return add(sql, params, Sql.ROW_EXTRACTOR);
+    }
+
+    public PipelineResult<Long> selectLong(String sql, Object... params) {
+        return add(sql, params, Sql.LONG_EXTRACTOR);
+    }
+
+    public PipelineResult<List<Long>> selectLongs(String sql, Object... params) {
+        return add(sql, params, Sql.LONGS_EXTRACTOR);
+    }
+
+    public PipelineResult<String> selectString(String sql, Object... params) {
+        return add(sql, params, Sql.STRING_EXTRACTOR);
+    }
+
+    public PipelineResult<Integer> update(String sql, Object... params) {
+        return add(sql, params, null);
+    }
+
+    public PipelineResult<Integer> delete(String sql, Object... params) {
+        return update(sql, params);
+    }
+
+    public void execute() {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (entries.size() > 1 && multiStatementsEnabled
+                    && MySqlConnectionProperties.isEnabled(connection, MySqlConnectionProperties.ALLOW_MULTI_QUERIES)) {
+                executeInOneRoundTrip();
+            } else {
+                executeSequentially();
+            }
+        } finally {
+            entries.clear();
+        }
+    }
+
+    private <T> PipelineResult<T> add(String sql, Object[] params, ResultSetExtractor<T> extractor) {
+        PipelineResult<T> result = new PipelineResult<>();
+        entries.add(new Entry<>(sql.strip(), Arrays.asList(params), extractor, result));
+
+        return result;
+    }
+
+    private void executeInOneRoundTrip() {
+        StringBuilder sql = new StringBuilder();
+        List<Object> parameters = new ArrayList<>();
+
+        for (Entry<?> entry : entries) {
+            if (!sql.isEmpty()) {
+                sql.append(";\n");
+            }
+            sql.append(entry.sql());
+            parameters.addAll(entry.parameters());
+        }
+
+        jdbcTemplate.executeMulti(sql.toString(), parameters, this::completeAll);
+
+        // 한 번에 보낸 UPDATE 는 변경분을 따로 계산할 수 없다.
+        boolean autoCommit = jdbcTemplate.isAutoCommit();
+        for (Entry<?> entry : entries) {
+            if (!entry.isQuery()) {
+                aggregates.invalidate(entry.sql(), autoCommit);
+            }
+        }
+    }
+
+    /**
+     * multi statement 의 결과를 순서대로 각 SQL 에 맞춰 준다.
+     * 결과의 종류(결과셋/수정 건수)나 개수가 SQL 과 맞지 않으면 실패한다.
+     */
+    void completeAll(Statement statement, boolean hasResultSet) throws SQLException {
+        boolean isResultSet = hasResultSet;
+
+        for (int i = 0; i < entries.size(); i++) {
+            Entry<?> entry = entries.get(i);
+
+            if (entry.isQuery()) {
+                if (!isResultSet) {
+                    throw new SQLException("파이프라인 %d번째 SQL 은 조회인데 결과셋이 없습니다. : %s".formatted(i + 1, entry.sql()));
+                }
+
+                entry.completeWith(statement.getResultSet());
+            } else {
+                int updateCount = isResultSet ? -1 : statement.getUpdateCount();
+                if (updateCount == -1) {
+                    throw new SQLException("파이프라인 %d번째 SQL 의 수정 건수가 없습니다. : %s".formatted(i + 1, entry.sql()));
+                }
+
+                entry.completeUpdate(updateCount);
+            }
+
+            isResultSet = statement.getMoreResults();
+        }
+
+        if (isResultSet || statement.getUpdateCount() != -1) {
+            throw new SQLException("파이프라인의 SQL 보다 결과가 더 많습니다.");
+        }
+    }
+
+    private void executeSequentially() {
+        int i = 0;
+
+        while (i < entries.size()) {
+            Entry<?> entry = entries.get(i);
+
+            if (entry.isQuery()) {
+                jdbcTemplate.query(entry.sql(), entry.parameters(), rs -> {
+                    entry.completeWith(rs);
+                    return null;
+                });
+                i++;
+                continue;
+            }
+
+            int end = i + 1;
+            while (end < entries.size() && !entries.get(end).isQuery() && entries.get(end).sql().equals(entry.sql())) {
+                end++;
+            }
+
+            List<List<Object>> parameterSets = new ArrayList<>();
+            for (int j = i; j < end; j++) {
+                parameterSets.add(entries.get(j).parameters());
+            }
+
+            int[] updateCounts;
+            if (end - i == 1) {
+                updateCounts = new int[]{aggregates.executeUpdate(jdbcTemplate, entry.sql(), entry.parameters())};
+            } else {
+                updateCounts = jdbcTemplate.executeBatch(entry.sql(), parameterSets);
+                aggregates.invalidate(entry.sql(), jdbcTemplate.isAutoCommit());
+            }
+
+            for (int j = i; j < end; j++) {
+                entries.get(j).completeUpdate(updateCounts[j - i]);
+            }
+
+            i = end;
+        }
+    }
+
+    private record Entry<T>(String sql, List<Object> parameters, ResultSetExtractor<T> extractor, PipelineResult<T> result) {
+
+        boolean isQuery() {
+            return extractor != null;
+        }
+
+        void completeWith(ResultSet rs) throws SQLException {
+            try (rs) {
+                result.complete(extractor.extractData(rs));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void completeUpdate(int updateCount) {
+            ((PipelineResult<Integer>) result).complete(updateCount);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.back.simpleDb;
+
+/**
+ * 따옴표로 감싼 문자열과 식별자를 건너뛰며 SQL 을 훑는다.
+ * 문자열 안의 백슬래시 이스케이프(\')도 건너뛴다. 백틱 식별자 안의 백슬래시는 이스케이프가 아니다.
+ */
+class SqlScanner {
+
+    private SqlScanner() {
+    }
+
+    static int countPlaceholders(String sql) {
+        return countPlaceholders(sql, sql.length());
+    }
+
+    /**
+     * end 앞에 있는 ? 의 수.
+     */
+    static int countPlaceholders(String sql, int end) {
+        int count = 0;
+
+        for (int i = 0; i < end; i++) {
+            char c = sql.charAt(i);
+
+            if (isQuote(c)) {
+                i = closingQuoteIndex(sql, i);
+            } else if (c == '?') {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * 괄호와 따옴표 밖에 있는 첫 WHERE 의 위치. 없으면 -1 이다.
+     */
+    static int topLevelWhereIndex(String sql, int from) {
+        int depth = 0;
+
+        for (int i = from; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+
+            if (isQuote(c)) {
+                i = closingQuoteIndex(sql, i);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0
+                    && sql.regionMatches(true, i, "WHERE", 0, 5)
+                    && (i == 0 || !Character.isLetterOrDigit(sql.charAt(i - 1)))
+                    && (i + 5 == sql.length() || !Character.isLetterOrDigit(sql.charAt(i + 5)))) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean isQuote(char c) {
+        return c == '\'' || c == '"' || c == '`';
+    }
+
+    /**
+     * 닫는 따옴표의 위치. 닫히지 않았으면 sql 의 길이다.
+     */
+    private static int closingQuoteIndex(String sql, int openIndex) {
+        char quote = sql.charAt(openIndex);
+
+        for (int i = openIndex + 1; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+
+            if (c == '\\' && quote != '`') {
+                i++;
+            } else if (c == quote) {
+                return i;
+            }
+        }
+
+        return sql.length();
+    }
+}
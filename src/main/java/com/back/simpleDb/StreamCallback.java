@@ -0,0 +1,8 @@
+package com.back.simpleDb;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface StreamCallback<S, R> {
+    R doInStream(S stream) throws IOException;
+}
@@ -0,0 +1,27 @@
+package com.back.simpleDb;
+
+import java.util.Objects;
+
+/**
+ * H2 에 없는 MySQL 함수를 테스트용으로 등록한다.
+ */
+public class H2Functions {
+
+    public static int field(Object value, Object... candidates) {
+        for (int i = 0; i < candidates.length; i++) {
+            if (matches(value, candidates[i])) {
+                return i + 1;
+            }
+        }
+
+        return 0;
+    }
+
+    private static boolean matches(Object value, Object candidate) {
+        if (value instanceof Number number && candidate instanceof Number other) {
+            return number.longValue() == other.longValue();
+        }
+
+        return Objects.equals(value == null ? null : value.toString(), candidate == null ? null : candidate.toString());
+    }
+}
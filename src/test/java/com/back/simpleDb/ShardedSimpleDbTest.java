@@ -0,0 +1,117 @@
+package com.back.simpleDb;
+
+import org.junit.jupiter.api.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class ShardedSimpleDbTest {
+    private static final int SHARD_COUNT = 3;
+
+    private static List<SimpleDb> shards;
+    private static ShardedSimpleDb shardedSimpleDb;
+
+    @BeforeAll
+    public static void beforeAll() {
+        shards = IntStream.range(0, SHARD_COUNT)
+                          .mapToObj(no -> TestSimpleDbs.create("simpleDb__shard%d".formatted(no)))
+                          .toList();
+        shards.forEach(TestSimpleDbs::createArticleTable);
+
+        shardedSimpleDb = new ShardedSimpleDb(shards, ShardRouter.modulo());
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        shardedSimpleDb.close();
+        shards.forEach(SimpleDb::close);
+    }
+
+    @BeforeEach
+    public void beforeEach() {
+        shards.forEach(TestSimpleDbs::truncateArticleTable);
+
+        // id 1 ~ 9 인 글을 id % 3 번 샤드에 나누어 저장합니다.
+        IntStream.rangeClosed(1, 9).forEach(id -> shardedSimpleDb.shard(id).run("""
+                INSERT INTO article
+                SET id = ?,
+                createdDate = NOW(),
+                modifiedDate = NOW(),
+                title = ?,
+                `body` = ?,
+                isBlind = ?
+                """, id, "제목%d".formatted(id), "내용%d".formatted(id), id > 6));
+    }
+
+    @Test
+    @DisplayName("샤드 키로 단일 샤드 조회")
+    public void t001() {
+        String title = shardedSimpleDb.genSql(5)
+                                      .append("SELECT title FROM article WHERE id = ?", 5)
+                                      .selectString();
+
+        long count = shards.get(2).genSql()
+                           .append("SELECT COUNT(*) FROM article")
+                           .selectLong();
+
+        assertThat(title).isEqualTo("제목5");
+        assertThat(count).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("selectLongs, 전체 샤드 병합 후 LIMIT")
+    public void t002() {
+        List<Long> ids = shardedSimpleDb.selectLongs("SELECT id FROM article ORDER BY id ASC LIMIT 4", Comparator.naturalOrder(), 4);
+        List<Long> descIds = shardedSimpleDb.selectLongs("SELECT id FROM article ORDER BY id DESC LIMIT 4", Comparator.reverseOrder(), 4);
+
+        assertThat(ids).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(descIds).containsExactly(9L, 8L, 7L, 6L);
+    }
+
+    @Test
+    @DisplayName("selectSortedRows, 정렬 기준으로 병합")
+    public void t003() {
+        Comparator<Map<String, Object>> byIdDesc =
+                Comparator.comparing((Map<String, Object> row) -> ((Number) row.get("id")).longValue()).reversed();
+
+        List<Map<String, Object>> rows = shardedSimpleDb.selectSortedRows(
+                "SELECT id, title FROM article WHERE isBlind = ? ORDER BY id DESC LIMIT 4",
+                byIdDesc,
+                4,
+                false
+        );
+
+        assertThat(rows).extracting(row -> ((Number) row.get("id")).longValue())
+                        .containsExactly(6L, 5L, 4L, 3L);
+        assertThat(rows.get(0).get("title")).isEqualTo("제목6");
+    }
+
+    @Test
+    @DisplayName("scatterGather, 정렬 기준이 없으면 샤드 순서대로 이어 붙이고 LIMIT")
+    public void t004() {
+        List<Long> ids = shardedSimpleDb.scatterGather(
+                shard -> shard.genSql().append("SELECT id FROM article ORDER BY id ASC").selectLongs(),
+                null,
+                5
+        );
+
+        // 0번 샤드(3, 6, 9), 1번 샤드(1, 4, 7) 순서입니다.
+        assertThat(ids).containsExactly(3L, 6L, 9L, 1L, 4L);
+    }
+
+    @Test
+    @DisplayName("scatterGather, 한 샤드라도 실패하면 예외 전달")
+    public void t005() {
+        assertThatThrownBy(() -> shardedSimpleDb.selectRows("SELECT * FROM article_unknown"))
+                .isInstanceOf(RuntimeException.class);
+
+        // 실패 후에도 풀은 계속 쓸 수 있습니다.
+        assertThat(shardedSimpleDb.selectRows("SELECT id FROM article WHERE isBlind = ?", true)).hasSize(3);
+    }
+}
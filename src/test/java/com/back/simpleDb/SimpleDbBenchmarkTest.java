@@ -0,0 +1,136 @@
+package com.back.simpleDb;
+
+import com.back.Article;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * ./gradlew benchmark 로 실행한다. 기본 profile 은 인메모리 H2 이다.
+ */
+@Slf4j
+@Tag("benchmark")
+public class SimpleDbBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 10_000;
+    private static final int MEASURE_ITERATIONS = 100_000;
+
+    private static SimpleDb simpleDb;
+
+    @BeforeAll
+    public static void beforeAll() {
+        simpleDb = TestSimpleDbs.create("simpleDb__benchmark");
+        TestSimpleDbs.createArticleTable(simpleDb);
+
+        IntStream.rangeClosed(1, 100).forEach(no -> simpleDb.run("""
+                INSERT INTO article
+                SET createdDate = NOW(),
+                modifiedDate = NOW(),
+                title = ?,
+                `body` = ?,
+                isBlind = ?
+                """, "제목%d".formatted(no), "내용%d".formatted(no), no > 50));
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        simpleDb.close();
+    }
+
+    @Test
+    @DisplayName("selectLong, 주키 조회 처리량")
+    public void selectLongThroughput() {
+        report("selectLong", genSqlQuery());
+    }
+
+    @Test
+    @DisplayName("reusableSql, genSql 보다 적게 할당")
+    public void reusableSqlThroughput() {
+        assumeTrue(isAllocationMeasurable());
+
+        Runnable query = () -> simpleDb.reusableSql()
+                                       .append("SELECT id FROM article WHERE id = ?", 42)
+                                       .selectLong();
+
+        long baselineBytesPerOp = report("selectLong", genSqlQuery());
+        long bytesPerOp = report("reusableSql.selectLong", query);
+
+        assertThat(bytesPerOp).isLessThan(baselineBytesPerOp);
+    }
+
+    @Test
+    @DisplayName("PreparedQuery, genSql 보다 적게 할당")
+    public void preparedQueryThroughput() {
+        assumeTrue(isAllocationMeasurable());
+
+        try (PreparedQuery preparedQuery = simpleDb.prepareQuery("SELECT id FROM article WHERE id = ?")) {
+            Runnable query = () -> preparedQuery.bind(1, 42L).selectLong();
+
+            long baselineBytesPerOp = report("selectLong", genSqlQuery());
+            long bytesPerOp = report("PreparedQuery.selectLong", query);
+
+            assertThat(bytesPerOp).isLessThan(baselineBytesPerOp);
+        }
+    }
+
+    @Test
+    @DisplayName("selectRow, Article 매핑 처리량")
+    public void selectRowThroughput() {
+        Runnable query = () -> simpleDb.genSql()
+                                       .append("SELECT * FROM article WHERE id = ?", 42)
+                                       .selectRow(Article.class);
+
+        report("selectRow(Article)", query);
+    }
+
+    private Runnable genSqlQuery() {
+        return () -> simpleDb.genSql()
+                             .append("SELECT id FROM article WHERE id = ?", 42)
+                             .selectLong();
+    }
+
+    private boolean isAllocationMeasurable() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadMXBean
+                && threadMXBean.isThreadAllocatedMemorySupported()
+                && threadMXBean.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * 현재 스레드가 지금까지 할당한 바이트 수. JVM 이 지원하지 않으면 0 이다.
+     */
+    private long allocatedBytes() {
+        if (isAllocationMeasurable()) {
+            return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+        }
+
+        return 0;
+    }
+
+    /**
+     * 처리량과 할당량을 로그로 남기고, 한 번 실행할 때 할당한 바이트 수를 돌려준다.
+     */
+    private long report(String name, Runnable query) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            query.run();
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            query.run();
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        long allocatedAfter = allocatedBytes();
+
+        double opsPerSecond = MEASURE_ITERATIONS * 1_000_000_000.0 / elapsedNanos;
+        long bytesPerOp = (allocatedAfter - allocatedBefore) / MEASURE_ITERATIONS;
+        log.info("[benchmark] {} : {} ops/s, {} us/op, {} B/op",
+                name, "%.0f".formatted(opsPerSecond), "%.2f".formatted(elapsedNanos / 1_000.0 / MEASURE_ITERATIONS), bytesPerOp);
+
+        return bytesPerOp;
+    }
+}
@@ -2,20 +2,46 @@ package com.back.simpleDb;
 
 import com.back.Article;
 import org.junit.jupiter.api.*;
-
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @TestMethodOrder(MethodOrderer.MethodName.class)
 public class SimpleDbTest {
@@ -23,7 +49,7 @@ public class SimpleDbTest {
 
     @BeforeAll
     public static void beforeAll() {
-        simpleDb = new SimpleDb("localhost", "root", "1234", "simpleDb__test");
+        simpleDb = TestSimpleDbs.create("simpleDb__test");
         simpleDb.setDevMode(true);
 
         createArticleTable();
@@ -36,19 +62,7 @@ public class SimpleDbTest {
     }
 
     private static void createArticleTable() {
-        simpleDb.run("DROP TABLE IF EXISTS article");
-
-        simpleDb.run("""
-                CREATE TABLE article (
-                    id INT UNSIGNED NOT NULL AUTO_INCREMENT,
-                    PRIMARY KEY(id),
-                    createdDate DATETIME NOT NULL,
-                    modifiedDate DATETIME NOT NULL,
-                    title VARCHAR(100) NOT NULL,
-                    `body` TEXT NOT NULL,
-                    isBlind BIT(1) NOT NULL DEFAULT 0
-                )
-                """);
+        TestSimpleDbs.createArticleTable(simpleDb);
     }
 
     private void makeArticleTestData() {
@@ -69,7 +83,7 @@ public class SimpleDbTest {
     }
 
     private void truncateArticleTable() {
-        simpleDb.run("TRUNCATE article");
+        TestSimpleDbs.truncateArticleTable(simpleDb);
     }
 
     @Test
@@ -307,12 +321,12 @@ public class SimpleDbTest {
         SELECT COUNT(*)
         FROM article
         WHERE id BETWEEN '1' AND '3'
-        AND title LIKE CONCAT('%', '제목' '%')
+        AND title LIKE CONCAT('%', '제목', '%')
         */
         sql.append("SELECT COUNT(*)")
            .append("FROM article")
            .append("WHERE id BETWEEN ? AND ?", 1, 3)
-           .append("AND title LIKE CONCAT('%', ? '%')", "제목");
+           .append("AND title LIKE CONCAT('%', ?, '%')", "제목");
 
         long count = sql.selectLong();
 
@@ -534,4 +548,934 @@ public class SimpleDbTest {
 
         assertThat(newCount).isEqualTo(oldCount + 1);
     }
-}
\ No newline at end of file
+
+    record ArticleTitle(long id, String title) {
+    }
+
+    @Test
+    @DisplayName("selectRows, record projection")
+    public void t020() {
+        Sql sql = simpleDb.genSql();
+        /*
+        == rawSql ==
+        SELECT id, title
+        FROM article
+        ORDER BY id ASC
+        LIMIT 3
+        */
+        sql.append("SELECT id, title FROM article ORDER BY id ASC LIMIT 3");
+        List<ArticleTitle> articleTitles = sql.selectRows(ArticleTitle.class);
+
+        assertThat(articleTitles).hasSize(3);
+
+        IntStream.range(0, articleTitles.size()).forEach(i -> {
+            long id = i + 1;
+
+            ArticleTitle articleTitle = articleTitles.get(i);
+
+            assertThat(articleTitle.id()).isEqualTo(id);
+            assertThat(articleTitle.title()).isEqualTo("제목%d".formatted(id));
+        });
+    }
+
+    @Test
+    @DisplayName("selectRow, record projection")
+    public void t021() {
+        Sql sql = simpleDb.genSql();
+        /*
+        == rawSql ==
+        SELECT id, title
+        FROM article
+        WHERE id = 1
+        */
+        sql.append("SELECT id, title FROM article WHERE id = 1");
+        ArticleTitle articleTitle = sql.selectRow(ArticleTitle.class);
+
+        assertThat(articleTitle).isEqualTo(new ArticleTitle(1L, "제목1"));
+    }
+
+    @Test
+    @DisplayName("circuit breaker, 연결 실패가 누적되면 즉시 실패")
+    public void t022() {
+        SimpleDb unreachableDb = new SimpleDb("jdbc:h2:tcp://localhost:1/simpleDb__unknown", "sa", "");
+        unreachableDb.setCircuitBreaker(2, 60_000);
+
+        // 연결 실패 2번으로 circuit 이 열립니다.
+        assertThatThrownBy(unreachableDb::genSql).isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(unreachableDb::genSql).isInstanceOf(RuntimeException.class);
+
+        // 이후에는 데이터베이스에 접속하지 않고 바로 실패합니다.
+        assertThatThrownBy(unreachableDb::genSql)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("circuit");
+    }
+
+    @Test
+    @DisplayName("stream, Reader 바인딩과 Writer 로 읽기")
+    public void t023() {
+        String body = "긴 내용".repeat(10_000);
+
+        long newId = simpleDb.genSql()
+                             .append("INSERT INTO article")
+                             .append("SET createdDate = NOW()")
+                             .append(", modifiedDate = NOW()")
+                             .append(", title = ?", "제목 stream")
+                             .append(", body = ?", new StringReader(body))
+                             .insert();
+
+        StringWriter writer = new StringWriter();
+
+        long length = simpleDb.genSql()
+                              .append("SELECT body FROM article WHERE id = ?", newId)
+                              .selectTo(writer);
+
+        assertThat(length).isEqualTo(body.length());
+        assertThat(writer.toString()).isEqualTo(body);
+    }
+
+    @Test
+    @DisplayName("export, CSV 파일로 내보내기")
+    public void t024(@TempDir Path tempDir) throws IOException {
+        Path csv = tempDir.resolve("article.csv");
+
+        long exportedCount = simpleDb.genSql()
+                                     .append("SELECT id, title FROM article ORDER BY id ASC")
+                                     .export(csv, ExportFormat.CSV);
+
+        List<String> lines = Files.readAllLines(csv);
+
+        assertThat(exportedCount).isEqualTo(6);
+        assertThat(lines).hasSize(7);
+        assertThat(lines.get(0)).isEqualTo("id,title");
+        assertThat(lines.get(1)).isEqualTo("1,제목1");
+
+        // 쉼표나 따옴표가 있으면 따옴표로 감싸고, NULL 은 빈 칸으로 씁니다.
+        Path quotedCsv = tempDir.resolve("quoted.csv");
+        simpleDb.genSql()
+                .append("SELECT 'a,\"b\"' AS quoted, NULL AS note")
+                .export(quotedCsv, ExportFormat.CSV);
+
+        assertThat(Files.readAllLines(quotedCsv)).containsExactly("quoted,note", "\"a,\"\"b\"\"\",");
+    }
+
+    @Test
+    @DisplayName("export, 컬럼 포맷 파일로 내보내기")
+    public void t025(@TempDir Path tempDir) throws IOException {
+        Path columnar = tempDir.resolve("article.sdbc");
+
+        long exportedCount = simpleDb.genSql()
+                                     .append("SELECT id, title, isBlind, NULLIF(id, 2) AS maybeId")
+                                     .append("FROM article")
+                                     .append("WHERE id <= 2")
+                                     .append("ORDER BY id ASC")
+                                     .export(columnar, ExportFormat.COLUMNAR);
+
+        assertThat(exportedCount).isEqualTo(2);
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(columnar))) {
+            // header : "SDBC" | version | columnCount | (nameLength, name, type) * columnCount
+            assertThat(new String(in.readNBytes(4), StandardCharsets.US_ASCII)).isEqualTo("SDBC");
+            assertThat(in.readInt()).isEqualTo(1);
+            assertThat(in.readInt()).isEqualTo(4);
+
+            String[] names = new String[4];
+            byte[] types = new byte[4];
+            for (int i = 0; i < 4; i++) {
+                names[i] = new String(in.readNBytes(in.readShort()), StandardCharsets.UTF_8);
+                types[i] = in.readByte();
+            }
+
+            assertThat(names).containsExactly("id", "title", "isBlind", "maybeId");
+            assertThat(types).containsExactly((byte) 1, (byte) 5, (byte) 3, (byte) 1);
+
+            // batch : rowCount | (null bitmap, non-null values) * columnCount
+            assertThat(in.readInt()).isEqualTo(2);
+
+            assertThat(in.readByte()).isEqualTo((byte) 0);
+            assertThat(in.readLong()).isEqualTo(1L);
+            assertThat(in.readLong()).isEqualTo(2L);
+
+            assertThat(in.readByte()).isEqualTo((byte) 0);
+            assertThat(new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8)).isEqualTo("제목1");
+            assertThat(new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8)).isEqualTo("제목2");
+
+            assertThat(in.readByte()).isEqualTo((byte) 0);
+            assertThat(in.readByte()).isEqualTo((byte) 0);
+            assertThat(in.readByte()).isEqualTo((byte) 0);
+
+            // 두 번째 행의 maybeId 만 NULL 이므로 비트 1 이 켜지고 값은 하나만 씁니다.
+            assertThat(in.readByte()).isEqualTo((byte) 0b10);
+            assertThat(in.readLong()).isEqualTo(1L);
+
+            // footer
+            assertThat(in.readInt()).isEqualTo(0);
+            assertThat(in.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    @DisplayName("bulkLoad, 행 스트림 적재")
+    public void t026() {
+        LocalDateTime now = LocalDateTime.now();
+
+        long loadedCount = simpleDb.bulkLoad(
+                "article",
+                List.of("createdDate", "modifiedDate", "title", "body", "isBlind"),
+                IntStream.rangeClosed(1, 2_500)
+                         .mapToObj(no -> new Object[]{now, now, "대량 제목%d".formatted(no), "대량\t내용\n%d".formatted(no), false})
+        );
+
+        long count = simpleDb.genSql()
+                             .append("SELECT COUNT(*) FROM article WHERE title LIKE ?", "대량 제목%")
+                             .selectLong();
+
+        String body = simpleDb.genSql()
+                              .append("SELECT body FROM article WHERE title = ?", "대량 제목1")
+                              .selectString();
+
+        assertThat(loadedCount).isEqualTo(2_500);
+        assertThat(count).isEqualTo(2_500);
+        assertThat(body).isEqualTo("대량\t내용\n1");
+    }
+
+    @Test
+    @DisplayName("bulkLoad, 객체 스트림 적재")
+    public void t027() {
+        LocalDateTime now = LocalDateTime.now();
+
+        long loadedCount = simpleDb.bulkLoad("article", IntStream.rangeClosed(1, 3).mapToObj(no -> {
+            Article article = new Article();
+            article.setCreatedDate(now);
+            article.setModifiedDate(now);
+            article.setTitle("객체 제목%d".formatted(no));
+            article.setBody("객체 내용%d".formatted(no));
+            return article;
+        }), "createdDate", "modifiedDate", "title", "body", "isBlind");
+
+        assertThat(loadedCount).isEqualTo(3);
+        assertThat(simpleDb.genSql().append("SELECT COUNT(*) FROM article").selectLong()).isEqualTo(9);
+    }
+
+    @Test
+    @DisplayName("pipeline, 여러 SQL 한 번에 실행")
+    public void t028() {
+        SqlPipeline pipeline = simpleDb.genPipeline();
+
+        PipelineResult<Long> count = pipeline.selectLong("SELECT COUNT(*) FROM article WHERE isBlind = ?", false);
+        PipelineResult<Integer> firstUpdated = pipeline.update("UPDATE article SET title = ? WHERE id = ?", "제목 new", 1);
+        PipelineResult<Integer> secondUpdated = pipeline.update("UPDATE article SET title = ? WHERE id = ?", "제목 new", 2);
+        PipelineResult<List<Long>> ids = pipeline.selectLongs("SELECT id FROM article WHERE title = ? ORDER BY id", "제목 new");
+        PipelineResult<Long> nullBound = pipeline.selectLong("SELECT COUNT(*) FROM article WHERE id = COALESCE(?, 1)", (Object) null);
+
+        assertThat(count.isCompleted()).isFalse();
+
+        pipeline.execute();
+
+        assertThat(count.get()).isEqualTo(3);
+        assertThat(firstUpdated.get()).isEqualTo(1);
+        assertThat(secondUpdated.get()).isEqualTo(1);
+        assertThat(ids.get()).containsExactly(1L, 2L);
+        assertThat(nullBound.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("query plan, 풀 스캔 조회 감지")
+    public void t029() throws InterruptedException {
+        QueryPlanAnalyzer analyzer = simpleDb.enableQueryPlanAnalyzer(1.0);
+
+        try {
+            // title 에는 인덱스가 없으므로 풀 스캔이 됩니다.
+            simpleDb.genSql()
+                    .append("SELECT * FROM article WHERE title = ?", "제목1")
+                    .selectRows();
+
+            for (int i = 0; i < 50 && analyzer.getPlans().isEmpty(); i++) {
+                Thread.sleep(100);
+            }
+
+            String shape = QueryPlanAnalyzer.normalize("SELECT * FROM article WHERE title = ?");
+
+            assertThat(analyzer.getPlans()).containsKey(shape);
+            assertThat(analyzer.getPlans().get(shape).fullScan()).isTrue();
+            assertThat(analyzer.getMetrics().fullScans()).isEqualTo(1);
+        } finally {
+            simpleDb.disableQueryPlanAnalyzer();
+        }
+    }
+
+    @Test
+    @DisplayName("query plan, SQL 모양 정규화")
+    public void t030() {
+        assertThat(QueryPlanAnalyzer.normalize("SELECT id\nFROM article WHERE id IN (?, ?, ?) AND title = '제목' LIMIT 3"))
+                .isEqualTo("SELECT id FROM article WHERE id IN (?..) AND title = ? LIMIT ?");
+    }
+
+    @Test
+    @DisplayName("update, version 으로 낙관적 잠금")
+    public void t031() {
+        Article article = simpleDb.genSql()
+                                  .append("SELECT * FROM article WHERE id = ?", 1)
+                                  .selectRow(Article.class);
+
+        article.setTitle("제목 new");
+        int affectedRowsCount = simpleDb.update(article);
+
+        Article updatedArticle = simpleDb.genSql()
+                                         .append("SELECT * FROM article WHERE id = ?", 1)
+                                         .selectRow(Article.class);
+
+        assertThat(affectedRowsCount).isEqualTo(1);
+        assertThat(article.getVersion()).isEqualTo(1);
+        assertThat(updatedArticle.getTitle()).isEqualTo("제목 new");
+        assertThat(updatedArticle.getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("update, 먼저 수정된 엔티티는 충돌")
+    public void t032() {
+        Article first = simpleDb.genSql().append("SELECT * FROM article WHERE id = ?", 1).selectRow(Article.class);
+        Article second = simpleDb.genSql().append("SELECT * FROM article WHERE id = ?", 1).selectRow(Article.class);
+
+        first.setTitle("제목 first");
+        simpleDb.update(first);
+
+        second.setTitle("제목 second");
+
+        assertThatThrownBy(() -> simpleDb.update(second))
+                .isInstanceOf(OptimisticLockException.class);
+        assertThat(simpleDb.genSql().append("SELECT title FROM article WHERE id = ?", 1).selectString())
+                .isEqualTo("제목 first");
+    }
+
+    @Test
+    @DisplayName("retryOnConflict, 충돌하면 다시 읽어서 재시도")
+    public void t033() {
+        Article stale = simpleDb.genSql().append("SELECT * FROM article WHERE id = ?", 1).selectRow(Article.class);
+        simpleDb.genSql().append("UPDATE article SET version = version + 1 WHERE id = ?", 1).update();
+
+        AtomicInteger attempts = new AtomicInteger();
+
+        simpleDb.retryOnConflict(3, () -> {
+            Article article = attempts.getAndIncrement() == 0
+                    ? stale
+                    : simpleDb.genSql().append("SELECT * FROM article WHERE id = ?", 1).selectRow(Article.class);
+
+            article.setTitle("제목 retry");
+            return simpleDb.update(article);
+        });
+
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(simpleDb.genSql().append("SELECT title FROM article WHERE id = ?", 1).selectString())
+                .isEqualTo("제목 retry");
+    }
+
+    @Test
+    @DisplayName("flush, 추적 중인 엔티티의 바뀐 컬럼만 저장")
+    public void t034() {
+        simpleDb.startTracking();
+
+        try {
+            List<Article> articles = simpleDb.genSql()
+                                             .append("SELECT * FROM article WHERE id IN (?, ?, ?) ORDER BY id", 1, 2, 3)
+                                             .selectRows(Article.class);
+
+            articles.get(0).setTitle("제목 dirty");
+            articles.get(1).setTitle("제목 dirty");
+            articles.get(2).setTitle(articles.get(2).getTitle());
+
+            articles.forEach(simpleDb::save);
+
+            int affectedRowsCount = simpleDb.flush();
+
+            List<Article> flushedArticles = simpleDb.genSql()
+                                                    .append("SELECT * FROM article WHERE id IN (?, ?, ?) ORDER BY id", 1, 2, 3)
+                                                    .selectRows(Article.class);
+
+            assertThat(affectedRowsCount).isEqualTo(2);
+            assertThat(flushedArticles).extracting(Article::getTitle)
+                                       .containsExactly("제목 dirty", "제목 dirty", "제목3");
+            assertThat(flushedArticles).extracting(Article::getVersion)
+                                       .containsExactly(1L, 1L, 0L);
+            assertThat(articles.get(0).getVersion()).isEqualTo(1);
+
+            // 저장 후에는 스냅샷이 갱신되어 다시 flush 해도 UPDATE 하지 않습니다.
+            simpleDb.save(articles.get(0));
+            assertThat(simpleDb.flush()).isZero();
+        } finally {
+            simpleDb.endTracking();
+        }
+    }
+
+    @Test
+    @DisplayName("change capture, 테이블별 리스너로 행 변경 전달")
+    public void t035() {
+        LocalChangeEventSource source = new LocalChangeEventSource();
+        Map<Object, String> titleCache = new ConcurrentHashMap<>(Map.of(1L, "제목1", 2L, "제목2"));
+
+        ChangeListener cacheInvalidator = event -> {
+            if (event.type() == ChangeEvent.Type.DELETE) {
+                titleCache.remove(event.primaryKey());
+            } else {
+                titleCache.put(event.primaryKey(), (String) event.after().get("title"));
+            }
+        };
+
+        simpleDb.addChangeListener("article", cacheInvalidator);
+        simpleDb.startChangeCapture(source);
+
+        try {
+            source.publish(ChangeEvent.updated("article", 1L, Map.of("title", "제목1"), Map.of("title", "제목 new")));
+            source.publish(ChangeEvent.deleted("article", 2L, Map.of("title", "제목2")));
+            source.publish(ChangeEvent.inserted("comment", 1L, Map.of("title", "다른 테이블")));
+
+            assertThat(titleCache).containsExactly(Map.entry(1L, "제목 new"));
+        } finally {
+            simpleDb.stopChangeCapture();
+            simpleDb.removeChangeListener("article", cacheInvalidator);
+        }
+    }
+
+    @Test
+    @DisplayName("reusableSql, 같은 Sql 을 비워서 재사용")
+    public void t036() {
+        Sql first = simpleDb.reusableSql();
+        long count = first.append("SELECT COUNT(*) FROM article WHERE isBlind = ?", false).selectLong();
+
+        Sql second = simpleDb.reusableSql();
+        String title = second.append("SELECT title FROM article WHERE id = ?", 2).selectString();
+
+        assertThat(second).isSameAs(first);
+        assertThat(count).isEqualTo(3);
+        assertThat(title).isEqualTo("제목2");
+    }
+
+    @Test
+    @DisplayName("prepareQuery, 값만 바꿔 반복 실행")
+    public void t037() {
+        try (PreparedQuery preparedQuery = simpleDb.prepareQuery("SELECT title FROM article WHERE id = ? AND title <> '?'")) {
+            assertThat(preparedQuery.getParameterCount()).isEqualTo(1);
+
+            List<String> titles = IntStream.rangeClosed(1, 3)
+                                           .mapToObj(id -> preparedQuery.bind(1, (long) id).selectString())
+                                           .toList();
+
+            assertThat(titles).containsExactly("제목1", "제목2", "제목3");
+        }
+
+        try (PreparedQuery preparedQuery = simpleDb.prepareQuery("SELECT * FROM article WHERE id = ?")) {
+            Article article = preparedQuery.bind(1, 1L).selectRow(Article.class);
+
+            assertThat(article.getTitle()).isEqualTo("제목1");
+        }
+    }
+
+    @Test
+    @DisplayName("materialized aggregate, Sql 쓰기로 증분 갱신")
+    public void t038() {
+        MaterializedAggregate visibleCount = simpleDb.declareCount("article", Map.of("isBlind", false));
+        MaterializedAggregate blindIdSum = simpleDb.declareSum("article", "id", Map.of("isBlind", true));
+
+        try {
+            assertThat(visibleCount.get()).isEqualTo(3);
+            assertThat(blindIdSum.get()).isEqualTo(4 + 5 + 6);
+
+            long newId = simpleDb.genSql()
+                                 .append("INSERT INTO article")
+                                 .append("SET createdDate = NOW()")
+                                 .append(", modifiedDate = NOW()")
+                                 .append(", title = ?", "제목 new")
+                                 .append(", body = ?", "내용 new")
+                                 .append(", isBlind = ?", false)
+                                 .insert();
+
+            assertThat(visibleCount.get()).isEqualTo(4);
+
+            simpleDb.genSql()
+                    .append("UPDATE article")
+                    .append("SET isBlind = ?", true)
+                    .append("WHERE id = ?", 1)
+                    .update();
+
+            assertThat(visibleCount.get()).isEqualTo(3);
+            assertThat(blindIdSum.get()).isEqualTo(1 + 4 + 5 + 6);
+
+            simpleDb.genSql()
+                    .append("DELETE FROM article")
+                    .appendIn("WHERE id IN (?)", 2, 3)
+                    .delete();
+
+            assertThat(visibleCount.get()).isEqualTo(1);
+
+            // rollback 된 변경분은 반영되지 않는다.
+            simpleDb.startTransaction();
+            simpleDb.genSql()
+                    .append("DELETE FROM article")
+                    .append("WHERE id = ?", newId)
+                    .delete();
+            simpleDb.rollback();
+
+            assertThat(visibleCount.get()).isEqualTo(1);
+            assertThat(visibleCount.isStale()).isFalse();
+
+            // Sql 을 거치지 않은 쓰기는 stale 로 표시되고, 다음 조회 때 다시 계산된다.
+            simpleDb.run("UPDATE article SET isBlind = false");
+
+            assertThat(visibleCount.isStale()).isTrue();
+            assertThat(visibleCount.get()).isEqualTo(5);
+            assertThat(blindIdSum.get()).isEqualTo(0);
+
+            simpleDb.reconcileAggregates();
+
+            assertThat(visibleCount.get()).isEqualTo(5);
+        } finally {
+            simpleDb.removeAggregate(visibleCount);
+            simpleDb.removeAggregate(blindIdSum);
+        }
+    }
+
+    @Test
+    @DisplayName("재연결, 트랜잭션 밖의 조회는 끊어진 커넥션을 새로 열어 다시 시도")
+    public void t039() throws SQLException {
+        SimpleDb db = TestSimpleDbs.create("simpleDb__test");
+
+        // 조회 중 끊어진 것을 알게 되면 새 커넥션으로 한 번 더 조회합니다.
+        db.getConnection().close();
+        assertThat(db.genSql().append("SELECT COUNT(*) FROM article").selectLong()).isEqualTo(6);
+
+        // 유휴 시간이 지난 커넥션은 꺼내기 전에 검사해서 바꿉니다.
+        db.setValidationIdleMillis(0);
+        db.getConnection().close();
+        assertThat(db.genSql().append("SELECT COUNT(*) FROM article").selectLong()).isEqualTo(6);
+
+        // 트랜잭션 중이면 다시 시도하지 않고 실패합니다.
+        db.setValidationIdleMillis(60_000);
+        db.startTransaction();
+        db.getConnection().close();
+        assertThatThrownBy(() -> db.genSql().append("SELECT COUNT(*) FROM article").selectLong())
+                .isInstanceOf(RuntimeException.class);
+
+        db.setValidationIdleMillis(0);
+        assertThatThrownBy(db::genSql)
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("트랜잭션");
+    }
+
+    @Test
+    @DisplayName("circuit breaker, HALF_OPEN 시험 연결이 RuntimeException 으로 실패해도 다시 OPEN")
+    public void t040() {
+        AtomicInteger attempts = new AtomicInteger();
+        DataSource failingDataSource = (DataSource) Proxy.newProxyInstance(
+                DataSource.class.getClassLoader(),
+                new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    attempts.incrementAndGet();
+                    throw new IllegalStateException("pool exhausted");
+                }
+        );
+
+        SimpleDb failingDb = new SimpleDb(failingDataSource);
+        failingDb.setCircuitBreaker(1, 0);
+
+        // 대기 시간이 0 이므로 매번 HALF_OPEN 시험 연결까지 갑니다.
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(failingDb::genSql).hasMessage("pool exhausted");
+        }
+
+        assertThat(attempts.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("LOAD DATA, 행 인코딩과 BIT 컬럼 변환")
+    public void t041() throws IOException {
+        List<Object[]> rows = List.of(
+                new Object[]{1L, "탭\t줄바꿈\n역슬래시\\", false, LocalDateTime.of(2025, 1, 2, 3, 4, 5)},
+                new Object[]{2L, null, true, null}
+        );
+
+        String encoded;
+        try (LoadDataInputStream in = new LoadDataInputStream(rows.iterator())) {
+            encoded = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        assertThat(encoded).isEqualTo(
+                "1\t탭\\t줄바꿈\\n역슬래시\\\\\t0\t2025-01-02 03:04:05.000000\n"
+                        + "2\t\\N\t1\t\\N\n"
+        );
+
+        // BIT(1) 컬럼은 사용자 변수로 받아 숫자로 바꿔 넣습니다.
+        String sql = BulkLoader.loadDataSql("article", List.of("title", "isBlind"), Set.of("isBlind"));
+
+        assertThat(sql).endsWith("(title, @isBlind)\nSET isBlind = @isBlind + 0");
+    }
+
+    @Test
+    @DisplayName("pipeline, 한 번의 왕복으로 받은 결과를 SQL 순서대로 매칭")
+    public void t042() throws SQLException {
+        Connection connection = simpleDb.getConnection();
+
+        try (Statement countStatement = connection.createStatement();
+             Statement idsStatement = connection.createStatement()) {
+            // MySQL 이 multi statement 에 돌려주는 결과 순서를 흉내 냅니다.
+            Statement statement = multiResultStatement(
+                    countStatement.executeQuery("SELECT 3"),
+                    1,
+                    idsStatement.executeQuery("SELECT 1 UNION ALL SELECT 2")
+            );
+
+            SqlPipeline pipeline = simpleDb.genPipeline();
+            PipelineResult<Long> count = pipeline.selectLong("SELECT COUNT(*) FROM article WHERE isBlind = ?", false);
+            PipelineResult<Integer> updated = pipeline.update("UPDATE article SET title = ? WHERE id = ?", "제목 new", 1);
+            PipelineResult<List<Long>> ids = pipeline.selectLongs("SELECT id FROM article WHERE id <= ?", 2);
+
+            pipeline.completeAll(statement, true);
+
+            assertThat(count.get()).isEqualTo(3);
+            assertThat(updated.get()).isEqualTo(1);
+            assertThat(ids.get()).containsExactly(1L, 2L);
+        }
+
+        // 조회 자리에 수정 건수가 오면 실패합니다.
+        SqlPipeline mismatched = simpleDb.genPipeline();
+        mismatched.selectLong("SELECT COUNT(*) FROM article");
+
+        assertThatThrownBy(() -> mismatched.completeAll(multiResultStatement(1), false))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("결과셋이 없습니다");
+
+        // SQL 보다 결과가 많아도 실패합니다.
+        SqlPipeline overflowed = simpleDb.genPipeline();
+        overflowed.update("UPDATE article SET title = ? WHERE id = ?", "제목 new", 1);
+
+        assertThatThrownBy(() -> overflowed.completeAll(multiResultStatement(1, 1), false))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("결과가 더 많습니다");
+
+        // MySQL 이면 실제로 한 번의 왕복으로 실행합니다.
+        if (!TestSimpleDbs.isH2()) {
+            SimpleDb multiStatementDb = TestSimpleDbs.create("simpleDb__test");
+            multiStatementDb.setMultiStatementsEnabled(true);
+
+            try {
+                SqlPipeline pipeline = multiStatementDb.genPipeline();
+                PipelineResult<Integer> updated = pipeline.update("UPDATE article SET title = ? WHERE id = ?", "제목 new", 2);
+                PipelineResult<String> title = pipeline.selectString("SELECT title FROM article WHERE id = ?", 2);
+
+                pipeline.execute();
+
+                assertThat(updated.get()).isEqualTo(1);
+                assertThat(title.get()).isEqualTo("제목 new");
+            } finally {
+                multiStatementDb.close();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("URL 로 만든 SimpleDb, 드라이버 옵션이 없으면 multi statement 와 LOAD DATA 대신 느린 경로로 실행")
+    public void t043() {
+        // URL 에 allowMultiQueries, allowLoadLocalInfile 이 없습니다.
+        SimpleDb urlDb = TestSimpleDbs.isH2()
+                ? TestSimpleDbs.create("simpleDb__test")
+                : new SimpleDb("jdbc:mysql://localhost:3306/simpleDb__test", "root", "1234");
+        urlDb.setMultiStatementsEnabled(true);
+        urlDb.setLocalInfileEnabled(true);
+
+        try {
+            Connection connection = urlDb.getConnection();
+            assertThat(MySqlConnectionProperties.isEnabled(connection, MySqlConnectionProperties.ALLOW_MULTI_QUERIES)).isFalse();
+            assertThat(MySqlConnectionProperties.isEnabled(connection, MySqlConnectionProperties.ALLOW_LOAD_LOCAL_INFILE)).isFalse();
+
+            SqlPipeline pipeline = urlDb.genPipeline();
+            PipelineResult<Integer> updated = pipeline.update("UPDATE article SET title = ? WHERE id = ?", "제목 new", 1);
+            PipelineResult<String> title = pipeline.selectString("SELECT title FROM article WHERE id = ?", 1);
+            pipeline.execute();
+
+            assertThat(updated.get()).isEqualTo(1);
+            assertThat(title.get()).isEqualTo("제목 new");
+
+            long loadedCount = urlDb.bulkLoad(
+                    "article",
+                    List.of("createdDate", "modifiedDate", "title", "body", "isBlind"),
+                    Stream.<Object[]>of(new Object[]{LocalDateTime.now(), LocalDateTime.now(), "적재 제목", "적재 내용", false})
+            );
+
+            assertThat(loadedCount).isEqualTo(1);
+        } finally {
+            urlDb.close();
+        }
+    }
+
+    @Test
+    @DisplayName("flush, 배치 중 일부가 충돌해도 나머지는 반영하고 충돌한 엔티티만 남김")
+    public void t044() {
+        simpleDb.startTracking();
+
+        try {
+            List<Article> articles = simpleDb.genSql()
+                                             .append("SELECT * FROM article WHERE id IN (?, ?) ORDER BY id", 1, 2)
+                                             .selectRows(Article.class);
+
+            // 1번 글은 다른 곳에서 먼저 수정됩니다.
+            simpleDb.run("UPDATE article SET version = version + 1 WHERE id = ?", 1);
+
+            articles.forEach(article -> {
+                article.setTitle("제목 dirty");
+                simpleDb.save(article);
+            });
+
+            assertThatThrownBy(simpleDb::flush).isInstanceOf(OptimisticLockException.class);
+
+            // 같은 배치의 2번 글은 저장되어 버전과 스냅샷이 갱신됩니다.
+            assertThat(articles.get(1).getVersion()).isEqualTo(1);
+            assertThat(simpleDb.genSql().append("SELECT title FROM article WHERE id = ?", 2).selectString())
+                    .isEqualTo("제목 dirty");
+
+            // 1번 글의 버전을 맞추면 1번 글만 다시 저장됩니다.
+            articles.get(0).setVersion(1);
+
+            assertThat(simpleDb.flush()).isEqualTo(1);
+            assertThat(articles.get(0).getVersion()).isEqualTo(2);
+        } finally {
+            simpleDb.endTracking();
+        }
+    }
+
+    @Test
+    @DisplayName("binlog, UNSIGNED 정수 주키를 JDBC 와 같은 Long 으로 맞춤")
+    public void t045() {
+        // INT UNSIGNED 의 4294967295 는 binlog 에서 Integer -1 로 옵니다.
+        assertThat(BinlogChangeEventSource.normalizeKey(-1, 3, true)).isEqualTo(4294967295L);
+        assertThat(BinlogChangeEventSource.normalizeKey(1, 3, true)).isEqualTo(1L);
+
+        // unsigned 여부를 모르면 음수 키만 UNSIGNED 로 봅니다.
+        assertThat(BinlogChangeEventSource.normalizeKey(-56, 1, null)).isEqualTo(200L);
+        assertThat(BinlogChangeEventSource.normalizeKey(7, 3, null)).isEqualTo(7L);
+
+        assertThat(BinlogChangeEventSource.normalizeKey(-1, 3, false)).isEqualTo(-1L);
+        assertThat(BinlogChangeEventSource.normalizeKey("key", 15, null)).isEqualTo("key");
+    }
+
+    @Test
+    @DisplayName("materialized aggregate, flush/prepareQuery/pipeline 쓰기도 반영")
+    public void t046() {
+        MaterializedAggregate visibleCount = simpleDb.declareCount("article", Map.of("isBlind", false));
+        simpleDb.startTracking();
+
+        try {
+            assertThat(visibleCount.get()).isEqualTo(3);
+
+            Article article = simpleDb.genSql()
+                                      .append("SELECT * FROM article WHERE id = ?", 1)
+                                      .selectRow(Article.class);
+            article.setBlind(true);
+            simpleDb.save(article);
+            simpleDb.flush();
+
+            assertThat(visibleCount.get()).isEqualTo(2);
+
+            try (PreparedQuery preparedQuery = simpleDb.prepareQuery("UPDATE article SET isBlind = ? WHERE id = ?")) {
+                preparedQuery.bind(1, true).bind(2, 2L).update();
+            }
+
+            // 한 건씩 실행한 UPDATE 는 변경분으로 갱신됩니다.
+            assertThat(visibleCount.isStale()).isFalse();
+            assertThat(visibleCount.get()).isEqualTo(1);
+
+            SqlPipeline pipeline = simpleDb.genPipeline();
+            pipeline.update("UPDATE article SET isBlind = ? WHERE id = ?", false, 4);
+            pipeline.execute();
+
+            assertThat(visibleCount.isStale()).isFalse();
+            assertThat(visibleCount.get()).isEqualTo(2);
+
+            // 배치로 묶인 UPDATE 는 stale 로 표시되고, 다음 조회 때 다시 계산됩니다.
+            pipeline.update("UPDATE article SET isBlind = ? WHERE id = ?", false, 5);
+            pipeline.update("UPDATE article SET isBlind = ? WHERE id = ?", false, 6);
+            pipeline.execute();
+
+            assertThat(visibleCount.get()).isEqualTo(4);
+        } finally {
+            simpleDb.endTracking();
+            simpleDb.removeAggregate(visibleCount);
+        }
+    }
+
+    @Test
+    @DisplayName("materialized aggregate, 쓰기와 reconcile 이 겹쳐도 값이 어긋나지 않음")
+    public void t047() throws Exception {
+        MaterializedAggregate visibleCount = simpleDb.declareCount("article", Map.of("isBlind", false));
+        ExecutorService executorService = Executors.newFixedThreadPool(5);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicLong minValue = new AtomicLong(Long.MAX_VALUE);
+
+        try {
+            // 4, 5, 6번 글을 공개/비공개로 번갈아 바꾸므로 공개 글 수는 3 ~ 6 사이입니다.
+            List<Future<?>> writers = new ArrayList<>();
+            for (long id = 4; id <= 6; id++) {
+                long articleId = id;
+                writers.add(executorService.submit(() -> {
+                    try {
+                        for (int i = 0; i < 20; i++) {
+                            simpleDb.genSql()
+                                    .append("UPDATE article")
+                                    .append("SET isBlind = ?", i % 2 == 1)
+                                    .append("WHERE id = ?", articleId)
+                                    .update();
+                        }
+                    } finally {
+                        simpleDb.close();
+                    }
+                }));
+            }
+
+            Future<?> reconciler = executorService.submit(() -> {
+                while (writing.get()) {
+                    simpleDb.reconcileAggregates();
+                }
+            });
+            Future<?> reader = executorService.submit(() -> {
+                while (writing.get()) {
+                    minValue.accumulateAndGet(visibleCount.get(), Math::min);
+                }
+            });
+
+            for (Future<?> writer : writers) {
+                writer.get(10, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            reconciler.get(10, TimeUnit.SECONDS);
+            reader.get(10, TimeUnit.SECONDS);
+
+            // 다시 계산하는 중에도 0 으로 초기화된 값이 보이지 않습니다.
+            assertThat(minValue.get()).isGreaterThanOrEqualTo(3);
+            assertThat(visibleCount.get()).isEqualTo(
+                    simpleDb.genSql().append("SELECT COUNT(*) FROM article WHERE isBlind = ?", false).selectLong());
+        } finally {
+            executorService.shutdownNow();
+            simpleDb.removeAggregate(visibleCount);
+        }
+    }
+
+    @Test
+    @DisplayName("SqlScanner, 이스케이프된 따옴표 안의 ? 와 WHERE 는 건너뜀")
+    public void t048() {
+        String sql = "UPDATE article SET title = 'it\\'s ? WHERE', isBlind = ? WHERE id = ?";
+
+        int whereIndex = SqlScanner.topLevelWhereIndex(sql, 0);
+
+        assertThat(SqlScanner.countPlaceholders(sql)).isEqualTo(2);
+        assertThat(sql.substring(whereIndex)).isEqualTo("WHERE id = ?");
+        assertThat(SqlScanner.countPlaceholders(sql, whereIndex)).isEqualTo(1);
+
+        // 백틱 식별자 안의 백슬래시는 이스케이프가 아닙니다.
+        assertThat(SqlScanner.countPlaceholders("SELECT `a\\` FROM article WHERE id = ?")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("재연결 재시도, 스트리밍 조회와 스트림 파라미터는 다시 실행하지 않음")
+    public void t049() throws SQLException {
+        SimpleDb db = TestSimpleDbs.create("simpleDb__test");
+
+        // 받는 쪽에 일부를 썼을 수 있는 스트리밍 조회는 그대로 실패합니다.
+        db.getConnection().close();
+        StringWriter writer = new StringWriter();
+        assertThatThrownBy(() -> db.genSql().append("SELECT `body` FROM article WHERE id = ?", 1).selectTo(writer))
+                .isInstanceOf(RuntimeException.class);
+        assertThat(writer.toString()).isEmpty();
+
+        // 이미 읽힌 스트림 파라미터는 다시 바인딩할 수 없습니다.
+        assertThatThrownBy(() -> db.genSql()
+                                   .append("SELECT COUNT(*) FROM article WHERE title = ?", new StringReader("제목1"))
+                                   .selectLong())
+                .isInstanceOf(RuntimeException.class);
+
+        // 일반 조회는 재연결 후 다시 시도합니다.
+        assertThat(db.genSql().append("SELECT COUNT(*) FROM article").selectLong()).isEqualTo(6);
+
+        db.close();
+    }
+
+    @Test
+    @DisplayName("flush, version 없이 조회한 엔티티는 save 할 수 없음")
+    public void t050() {
+        simpleDb.startTracking();
+
+        try {
+            Article projected = simpleDb.genSql()
+                                        .append("SELECT id, title FROM article WHERE id = ?", 1)
+                                        .selectRow(Article.class);
+            projected.setTitle("제목 dirty");
+
+            // 버전이 0 으로 남아 있어 flush 할 때마다 충돌하므로 save 단계에서 막습니다.
+            assertThatThrownBy(() -> simpleDb.save(projected))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("version");
+
+            Article article = simpleDb.genSql()
+                                      .append("SELECT id, title, version FROM article WHERE id = ?", 1)
+                                      .selectRow(Article.class);
+            article.setTitle("제목 dirty");
+            simpleDb.save(article);
+
+            assertThat(simpleDb.flush()).isEqualTo(1);
+        } finally {
+            simpleDb.endTracking();
+        }
+    }
+
+    @Test
+    @DisplayName("binlog 컬럼 값, JDBC 조회와 같은 타입으로 정규화")
+    public void t051() {
+        // 테이블 맵의 컬럼 타입(enum_field_types), 메타데이터, signedness 로 만든 컬럼 정보
+        BinlogChangeEventSource.Column unsignedInt = new BinlogChangeEventSource.Column("hits", 3, 0, true, null, null);
+        BinlogChangeEventSource.Column unsignedBigint = new BinlogChangeEventSource.Column("total", 8, 0, true, null, null);
+        BinlogChangeEventSource.Column varchar = new BinlogChangeEventSource.Column("title", 15, 400, null, StandardCharsets.UTF_8, null);
+        BinlogChangeEventSource.Column varbinary = new BinlogChangeEventSource.Column("hash", 15, 32, null, null, null);
+        BinlogChangeEventSource.Column flag = new BinlogChangeEventSource.Column("blind", 16, 1, null, null, null);
+        BinlogChangeEventSource.Column bits = new BinlogChangeEventSource.Column("mask", 16, (1 << 8) | 2, null, null, null);
+        BinlogChangeEventSource.Column status = new BinlogChangeEventSource.Column("status", 247, 0, null, null, new String[]{"DRAFT", "PUBLISHED"});
+        BinlogChangeEventSource.Column tags = new BinlogChangeEventSource.Column("tags", 248, 0, null, null, new String[]{"a", "b", "c"});
+        BinlogChangeEventSource.Column createdDate = new BinlogChangeEventSource.Column("createdDate", 18, 0, null, null, null);
+
+        assertThat(unsignedInt.normalize(-1)).isEqualTo(4294967295L);
+        assertThat(unsignedBigint.normalize(-1L)).isEqualTo(new BigInteger("18446744073709551615"));
+        assertThat(varchar.normalize("제목".getBytes(StandardCharsets.UTF_8))).isEqualTo("제목");
+        assertThat(varbinary.normalize(new byte[]{1, 2})).isEqualTo(new byte[]{1, 2});
+        assertThat(varchar.normalize(null)).isNull();
+
+        BitSet on = new BitSet();
+        on.set(0);
+        assertThat(flag.normalize(on)).isEqualTo(true);
+        assertThat(flag.normalize(new BitSet())).isEqualTo(false);
+
+        // BIT(10) 의 0b10_0000_0001 은 big-endian 2 바이트
+        BitSet tenBits = new BitSet();
+        tenBits.set(0);
+        tenBits.set(9);
+        assertThat(bits.normalize(tenBits)).isEqualTo(new byte[]{0b10, 0b1});
+
+        assertThat(status.normalize(2)).isEqualTo("PUBLISHED");
+        assertThat(status.normalize(0)).isEqualTo("");
+        assertThat(tags.normalize(5L)).isEqualTo("a,c");
+
+        // DATETIME 은 UTC 기준 Date 로 오므로 벽시계 시각 그대로 돌려받아야 합니다.
+        LocalDateTime wallClock = LocalDateTime.of(2024, 1, 2, 3, 4, 5);
+        Date date = Date.from(wallClock.toInstant(ZoneOffset.UTC));
+        assertThat(createdDate.normalize(date)).isEqualTo(wallClock);
+    }
+
+    private static Statement multiResultStatement(Object... results) {
+        int[] current = {0};
+
+        return (Statement) Proxy.newProxyInstance(
+                Statement.class.getClassLoader(),
+                new Class<?>[]{Statement.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getResultSet" -> current[0] < results.length && results[current[0]] instanceof ResultSet rs ? rs : null;
+                    case "getUpdateCount" -> current[0] < results.length && results[current[0]] instanceof Integer updateCount ? updateCount : -1;
+                    case "getMoreResults" -> ++current[0] < results.length && results[current[0]] instanceof ResultSet;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                }
+        );
+    }
+}
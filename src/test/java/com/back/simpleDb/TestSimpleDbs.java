@@ -0,0 +1,67 @@
+package com.back.simpleDb;
+
+/**
+ * 테스트와 벤치마크가 사용할 SimpleDb 를 profile 에 맞게 만든다.
+ * 기본 profile 은 외부 서버가 필요 없는 h2(MySQL 모드, 인메모리)이다.
+ */
+public class TestSimpleDbs {
+
+    private static final String PROFILE = System.getProperty("simpleDb.profile", "h2");
+
+    public static boolean isH2() {
+        return "h2".equals(PROFILE);
+    }
+
+    public static SimpleDb create(String database) {
+        if (isH2()) {
+            return new SimpleDb(
+                    "jdbc:h2:mem:%s;MODE=MySQL;DATABASE_TO_LOWER=FALSE;DATABASE_TO_UPPER=FALSE;DB_CLOSE_DELAY=-1".formatted(database),
+                    "sa",
+                    ""
+            );
+        }
+
+        return new SimpleDb("localhost", "root", "1234", database);
+    }
+
+    public static void createArticleTable(SimpleDb simpleDb) {
+        simpleDb.run("DROP TABLE IF EXISTS article");
+
+        if (isH2()) {
+            // H2 에는 UNSIGNED, BIT(1), FIELD() 가 없어 같은 의미의 타입과 함수로 맞춘다.
+            // (INT UNSIGNED -> BIGINT, BIT(1) -> BOOLEAN, FIELD() -> H2Functions.field) 나머지 컬럼은 MySQL 과 같다.
+            // H2 의 TEXT 는 CLOB 이라 값은 Clob 으로 오고, Sql 이 String 으로 바꾼다.
+            simpleDb.run("""
+                    CREATE TABLE article (
+                        id BIGINT NOT NULL AUTO_INCREMENT,
+                        PRIMARY KEY(id),
+                        createdDate DATETIME NOT NULL,
+                        modifiedDate DATETIME NOT NULL,
+                        title VARCHAR(100) NOT NULL,
+                        `body` TEXT NOT NULL,
+                        isBlind BOOLEAN NOT NULL DEFAULT FALSE,
+                        version BIGINT NOT NULL DEFAULT 0
+                    )
+                    """);
+            simpleDb.run("CREATE ALIAS IF NOT EXISTS FIELD FOR 'com.back.simpleDb.H2Functions.field'");
+            return;
+        }
+
+        simpleDb.run("""
+                CREATE TABLE article (
+                    id INT UNSIGNED NOT NULL AUTO_INCREMENT,
+                    PRIMARY KEY(id),
+                    createdDate DATETIME NOT NULL,
+                    modifiedDate DATETIME NOT NULL,
+                    title VARCHAR(100) NOT NULL,
+                    `body` TEXT NOT NULL,
+                    isBlind BIT(1) NOT NULL DEFAULT 0,
+                    version INT UNSIGNED NOT NULL DEFAULT 0
+                )
+                """);
+    }
+
+    public static void truncateArticleTable(SimpleDb simpleDb) {
+        simpleDb.run(isH2() ? "TRUNCATE TABLE article RESTART IDENTITY" : "TRUNCATE article");
+    }
+}